@@ -6,195 +6,487 @@
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import entities.*;
 import exceptions.*;
+import util.CaptionIndex;
+import util.CaptionStreamer;
+import util.CatalogSnapshot;
 import util.Constants;
+import util.CsvLine;
+import util.DurationIndex;
+import util.FacetIndex;
+import util.ErrorReport;
+import util.Journal;
+import util.LatencyHistogram;
+import util.LineReader;
+import util.LoadLog;
+import util.LoadMetrics;
+import util.MediaParser;
+import util.MediaRegistry;
+import util.PlaybackQueue;
+import util.SearchIndex;
+import util.TableRenderer;
 
 public class MusifyApp {
 
+    private static final TableRenderer PLAYLIST_HEADER = new TableRenderer(Constants.PLAYLIST_HEADER_FORMATTER);
+    private static final TableRenderer PLAYLIST_ROW = new TableRenderer(Constants.PLAYLIST_FORMATTER);
+    private static final TableRenderer SONG_HEADER = new TableRenderer(Constants.SONG_PLAYLIST_HEADER);
+    private static final TableRenderer SONG_ROW = new TableRenderer(Constants.SONG_PLAYLIST_DATA_FORMATTER);
+    private static final TableRenderer PODCAST_HEADER = new TableRenderer(Constants.PODCAST_PLAYLIST_HEADER);
+    private static final TableRenderer PODCAST_ROW = new TableRenderer(Constants.PODCAST_DATA_FORMATTER);
+    private static final TableRenderer SHORTCLIP_HEADER = new TableRenderer(Constants.SHORTCLIP_PLAYLIST_HEADER);
+    private static final TableRenderer SHORTCLIP_ROW = new TableRenderer(Constants.SHORTCLIP_DATA_FORMATTER);
+    private static final TableRenderer SEARCH_HEADER = new TableRenderer(Constants.SEARCH_HEADER);
+    private static final TableRenderer SEARCH_ROW = new TableRenderer(Constants.SEARCH_DATA_FORMATTER);
+    private static final TableRenderer PLAYTIME_HEADER = new TableRenderer(Constants.PLAYTIME_HEADER);
+    private static final TableRenderer PLAYTIME_ROW = new TableRenderer(Constants.PLAYTIME_DATA_FORMATTER);
+    private static final TableRenderer DURATION_HEADER = new TableRenderer(Constants.DURATION_HEADER);
+    private static final TableRenderer DURATION_ROW = new TableRenderer(Constants.DURATION_DATA_FORMATTER);
+    private static final TableRenderer SCRIPT_SUMMARY_HEADER = new TableRenderer(Constants.SCRIPT_SUMMARY_HEADER);
+    private static final TableRenderer SCRIPT_SUMMARY_ROW = new TableRenderer(Constants.SCRIPT_SUMMARY_FORMATTER);
+
     private String userName;
-    private ArrayList<Playlist> playlists = new ArrayList<>();
+    private PlaylistCatalog playlists = new PlaylistCatalog();
+    private String loadedIndexFile;
+    // set when playlists are created or removed, so the index file needs rewriting
+    private boolean indexDirty = false;
+    // set when playlists are created or removed, so the loaded index no longer lists them all
+    private boolean membershipChanged = false;
+    // set by any edit, so a session that only reads leaves the data directory alone
+    private boolean edited = false;
+    // index lines skipped while loading, kept in the snapshot so loading from it reports them too
+    private final ArrayList<CatalogSnapshot.Rejection> indexRejections = new ArrayList<>();
+    private Journal journal;
+    // listing output is built here a page at a time
+    private final StringBuilder page = new StringBuilder();
+    private final LoadMetrics metrics = LoadMetrics.shared();
+    // only set while loading in summary mode
+    private volatile ErrorReport errorReport;
+    // only set while loading, so shared rows are not kept alive afterwards
+    private volatile MediaRegistry registry;
+    private final SearchIndex searchIndex = new SearchIndex();
+    private final DurationIndex durationIndex = new DurationIndex();
+    private final FacetIndex facetIndex = new FacetIndex();
+    private final CaptionIndex captionIndex = new CaptionIndex(new File(Constants.MEDIATEXT_DIR), new File(Constants.CAPTION_INDEX_FILE));
+    private int pageRows;
+    private int pageSize = Integer.getInteger(Constants.PAGE_SIZE_PROPERTY, Constants.DEFAULT_PAGE_SIZE);
+    private String captionMode = System.getProperty(Constants.CAPTIONS_PROPERTY, Constants.CAPTIONS_EAGER);
+    private int prefetchDepth = Integer.getInteger(Constants.PREFETCH_DEPTH_PROPERTY, Constants.DEFAULT_PREFETCH_DEPTH);
+
+    public MusifyApp() {
+        playlists.addListener(searchIndex);
+        playlists.addListener(durationIndex);
+        playlists.addListener(facetIndex);
+        playlists.addListener(captionIndex);
+    }
 
     public static void main(String[] args)  {
+        LoadMetrics.register();
         MusifyApp app = new MusifyApp();
+        // java MusifyApp <user> <index> --script <file or - for stdin>
+        boolean scripted = args.length == 4 && args[2].equals(Constants.SCRIPT_OPTION);
         
         if (args.length == 0) {
             app.userName = "Stranger";
             System.out.println("No Playlist data found to load.");
-        } else if (args.length == 2){
+        } else if (args.length == 2 || scripted){
             app.userName = args[0];
-            try {
-                app.handleFiles("data/" + args[1]);
-            } catch(InvalidLineException e) {
-                System.err.println(e.getMessage());
+            String indexFile = Constants.DATA_DIR + args[1];
+            if (Constants.ERRORS_SUMMARY.equals(System.getProperty(Constants.ERRORS_PROPERTY))) {
+                app.errorReport = new ErrorReport(Integer.getInteger(Constants.ERROR_SAMPLES_PROPERTY, Constants.DEFAULT_ERROR_SAMPLES));
+            }
+            app.registry = new MediaRegistry();
+            // opened first, so a save a crash interrupted is settled before any file is read
+            app.openJournal(indexFile);
+            if (!app.loadSnapshot(indexFile)) {
+                try {
+                    app.handleFiles(indexFile);
+                } catch(InvalidLineException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+            if (app.errorReport != null) {
+                if (!app.errorReport.isEmpty()) {
+                    System.err.print(app.errorReport);
+                }
+                app.errorReport = null;
             }
             
+            app.replayJournal();
+            if (app.registry.getUniqueMedia() < app.registry.getRows()) {
+                System.out.println(app.registry.report());
+            }
+            app.registry = null;
+            app.captionIndex.buildInBackground();
             System.out.println("Data loading complete.");
         }
+
+        if (scripted) {
+            app.runScript(args[3]);
+            return;
+        }
         
         app.displayWelcomeMessage();
         app.runMainMenu();
 
     }
 
-    
+    // Loads the binary snapshot when the index and playlist files are the ones it was written from.
+    private boolean loadSnapshot(String indexFile) {
+        if (!Boolean.parseBoolean(System.getProperty(Constants.SNAPSHOT_PROPERTY, "true"))) {
+            return false;
+        }
+        File index = new File(indexFile);
+        File snapshot = new File(indexFile + Constants.SNAPSHOT_SUFFIX);
+        if (!index.isFile() || !snapshot.isFile()) {
+            return false;
+        }
+        CatalogSnapshot.Contents loaded = CatalogSnapshot.read(snapshot, index, registry);
+        if (loaded == null) {
+            return false;
+        }
+        for (Playlist playlist : loaded.getPlaylists()) {
+            if (!playlists.add(playlist)) {
+                indexDirty = true;
+            }
+            playlist.markClean();
+        }
+        loadedIndexFile = indexFile;
+        indexRejections.addAll(loaded.getRejections());
+        if (!indexRejections.isEmpty()) {
+            indexDirty = true;
+        }
+        // same messages in the same order as loading the text files
+        LoadLog log = LoadLog.console();
+        int next = 0;
+        for (int i = 0; i < loaded.getPlaylists().size(); i++) {
+            next = replayRejections(log, next, i);
+            Playlist playlist = loaded.getPlaylists().get(i);
+            for (Media media : playlist.getMediaList()) {
+                loadCaption(media, playlist.getMediaType().toUpperCase(), log);
+            }
+        }
+        replayRejections(log, next, Integer.MAX_VALUE);
+        return true;
+    }
+
+    // Reports the stored index rejections that came before playlist number position.
+    private int replayRejections(LoadLog log, int next, int position) {
+        ErrorReport report = errorReport;
+        for (; next < indexRejections.size() && indexRejections.get(next).getPosition() <= position; next++) {
+            CatalogSnapshot.Rejection rejection = indexRejections.get(next);
+            if (report != null) {
+                log.reject(report, rejection.getMessage(), rejection.getSource(), rejection.getLineNumber(), rejection.getLine());
+            } else {
+                log.err(rejection.getMessage());
+            }
+        }
+        return next;
+    }
+
+    private void openJournal(String indexFile) {
+        try {
+            journal = new Journal(new File(indexFile + Constants.JOURNAL_SUFFIX));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    private void replayJournal() {
+        if (journal == null) {
+            return;
+        }
+        ArrayList<String[]> records;
+        try {
+            records = journal.read();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        // edits made after the last save, applied on top of the loaded files
+        for (String[] record : records) {
+            try {
+                applyJournalRecord(record);
+            } catch (InvalidLineException | InvalidFormatException | PlaylistFullException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("Skipping journal record for playlist " + record[1] + ".");
+            }
+        }
+        if (!records.isEmpty()) {
+            edited = true;
+            System.out.println("Replayed " + records.size() + " unsaved playlist changes.");
+        }
+    }
+
+    private void applyJournalRecord(String[] record) throws InvalidLineException, InvalidFormatException, PlaylistFullException {
+        Playlist playlist = playlists.find(record[1]);
+        if (record[0].equals(Journal.CREATE_PLAYLIST)) {
+            if (playlist == null) {
+                playlists.add(new Playlist(record[1], record[2], record[3]));
+                indexDirty = true;
+                membershipChanged = true;
+            }
+            return;
+        }
+        if (playlist == null) {
+            throw new InvalidLineException("No such playlist found with name: " + record[1]);
+        }
+        switch (record[0]) {
+            case Journal.ADD_MEDIA:
+                Media media = MediaParser.parse(record[2], playlist.getMediaType().toUpperCase());
+                if (media != null) {
+                    playlist.addMedia(media);
+                }
+                break;
+            case Journal.REMOVE_MEDIA:
+                playlist.removeMedia(record[2]);
+                break;
+            case Journal.REMOVE_PLAYLIST:
+                playlists.remove(playlist.getName());
+                indexDirty = true;
+                membershipChanged = true;
+                break;
+        }
+    }
+
+    private interface JournalEntry {
+        void writeTo(Journal journal) throws IOException;
+    }
+
+    private void record(JournalEntry entry) {
+        edited = true;
+        if (journal == null) {
+            return;
+        }
+        try {
+            entry.writeTo(journal);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // Called after each edit. The journal already holds the change, so the
+    // playlist files are only rewritten once it grows past its size limit.
+    private void persistEdit(Playlist playlist) {
+        if (journal == null) {
+            savePlaylistFile(playlist);
+        } else if (journal.size() > Long.getLong(Constants.JOURNAL_MAX_BYTES_PROPERTY, Constants.DEFAULT_JOURNAL_MAX_BYTES)) {
+            savePlaylist(new String[0], false);
+        }
+    }
+
     private void handleFiles(String filename) throws InvalidLineException{
-        Scanner inputStream = null;
+        long start = System.nanoTime();
+        long lines = 0;
+        LineReader inputStream = null;
+        loadedIndexFile = filename;
+        int threads = Integer.getInteger(Constants.LOADER_THREADS_PROPERTY, 1);
+        if (threads == 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        // serial loading prints each playlist's messages as soon as it is loaded
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        ArrayList<Future<LoadLog>> pending = new ArrayList<>();
 
         try {
-            inputStream = new Scanner(new FileInputStream(filename));
-        
-            while (inputStream.hasNextLine()) {
-                String line = inputStream.nextLine();
-                try {
-                    String[] parts = line.split(",");
-                    if (parts.length < 3) {
-                        throw new InvalidLineException("Invalid Playlist data. Skipping this line.");
-                    }
-                    String playlistName = parts[0];
-                    String mediaType = parts[1];
-                    String mediaFileName = parts[2];
+            try {
+                inputStream = new LineReader(new File(filename));
+                CsvLine parts = new CsvLine();
 
-                    Playlist playlist = new Playlist(playlistName, mediaType, mediaFileName);
-                    playlists.add(playlist);
+                while (inputStream.readLine(parts)) {
+                    lines++;
+                    LoadLog log = new LoadLog();
+                    try {
+                        if (parts.size() < 3) {
+                            throw new InvalidLineException("Invalid Playlist data. Skipping this line.");
+                        }
+                        String playlistName = parts.field(0);
+                        String mediaType = parts.field(1);
+                        String mediaFileName = parts.field(2);
 
-                    handleMediaFile("data/playlist/" + mediaFileName, mediaType, playlist);
-                } catch(InvalidLineException | InvalidFormatException e) {
-                    System.err.println(e.getMessage());
+                        Playlist playlist = new Playlist(playlistName, mediaType, mediaFileName);
+                        if (!playlists.add(playlist)) {
+                            throw new InvalidLineException("Duplicate Playlist name. Skipping this line.");
+                        }
+
+                        if (executor != null) {
+                            pending.add(executor.submit(() -> {
+                                handleMediaFile(Constants.PLAYLIST_DIR + mediaFileName, mediaType, playlist, log);
+                                return log;
+                            }));
+                            continue;
+                        }
+                        handleMediaFile(Constants.PLAYLIST_DIR + mediaFileName, mediaType, playlist, log);
+                    } catch(InvalidLineException | InvalidFormatException e) {
+                        reject(log, e, e.getMessage(), filename, lines, parts.getLine());
+                        indexRejections.add(new CatalogSnapshot.Rejection(playlists.size(), e.getMessage(), filename, lines, parts.getLine()));
+                        indexDirty = true;
+                    }
+                    if (executor != null) {
+                        pending.add(CompletableFuture.completedFuture(log));
+                    } else {
+                        log.print();
+                    }
+                }
+            } catch (FileNotFoundException e) {
+                System.err.println("Invalid or missing file.");
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            } finally{
+                if (inputStream != null) {
+                    metrics.fileRead(inputStream.getBytesRead(), lines);
                 }
+                closeQuietly(inputStream);
             }
-        } catch (FileNotFoundException e) {
-            System.err.println("Invalid or missing file.");
-        } finally{
-            if(inputStream != null) {
-                inputStream.close();
+
+            // print in index-file order so the output matches the serial loader
+            for (Future<LoadLog> result : pending) {
+                try {
+                    result.get().print();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    System.err.println(e.getCause().getMessage());
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
             }
         }
+        metrics.record(LoadMetrics.LOAD_INDEX, start);
     }
 
-    private void handleMediaFile(String filename, String mediaType, Playlist playlist) throws InvalidLineException{
-        Scanner inputStream = null;
+    private void handleMediaFile(String filename, String mediaType, Playlist playlist, LoadLog log) throws InvalidLineException{
+        long start = System.nanoTime();
+        long lines = 0;
+        LineReader inputStream = null;
+        // a file with skipped lines stays dirty so the next save drops them, as a full rewrite did
+        boolean clean = true;
         try {
-            inputStream = new Scanner(new FileInputStream(filename));
+            inputStream = new LineReader(new File(filename));
+            CsvLine parts = new CsvLine();
         
-            while (inputStream.hasNextLine()) {
-                String line = inputStream.nextLine();
+            while (inputStream.readLine(parts)) {
+                lines++;
                 try{
-                    String[] parts = line.split(",");
-                    switch(mediaType) {
-                        case Constants.SONG:
-                            if (parts.length < 6) {
-                                throw new InvalidLineException("Song details incomplete. Skipping this line.");
-                            }
-                            int songDuration = Integer.parseInt(parts[4]); 
-                            // split name('#')
-                            String[] artistArray = parts[2].split("#");
-                            ArrayList<String> artists = new ArrayList<String>();
-                            for (String artist : artistArray) {
-                                artists.add(artist);
-                            }
-                            Song song = new Song(parts[0], parts[1], artists, parts[3], songDuration, parts[5]);
-                            playlist.addMedia(song); //Adds the media to the playlist
-                            // try-catch to report MediaNotFoundException
-                            try {
-                                ArrayList<String> captions = handleCaptionFile("data/mediatext/" + parts[5], mediaType);
-                                if (captions != null) {
-                                    for (String caption : captions) {
-                                        System.out.println(caption);
-                                    }
-                                }
-                            } catch (MediaNotFoundException e) {
-                                System.err.println(e.getMessage());
-                            }
-
-                            break;
-                        case Constants.PODCAST:
-                            if (parts.length < 8) {
-                                throw new InvalidLineException("Podcast details incomplete. Skipping this line.");
-                            }
-                            // split name('#')
-                            String[] hostArray = parts[2].split("#");
-                            ArrayList<String> hosts = new ArrayList<String>();
-                            for (String host : hostArray) {
-                                hosts.add(host);
-                            }
-                            int episodeNumber = Integer.parseInt(parts[5]);
-                            int podcastDuration = Integer.parseInt(parts[6]);
-                            Podcast podcast = new Podcast(parts[0], parts[1], hosts, parts[3], parts[4], episodeNumber, podcastDuration, parts[7]);
-                            playlist.addMedia(podcast);
-
-                            // try-catch to report MediaNotFoundException
-                            try {
-                                ArrayList<String> captions = handleCaptionFile("data/mediatext/" + parts[7], mediaType);
-                                if (captions != null) {
-                                    for (String caption : captions) {
-                                        System.out.println(caption);
-                                    }
-                                }
-                            } catch (MediaNotFoundException e) {
-                                System.err.println(e.getMessage());
-                            }
-                            
-                            break;
-                        case Constants.SHORTCLIP:
-                            if (parts.length < 5) {
-                                throw new InvalidLineException("ShortClip details incomplete. Skipping this line.");
-                            }
-                            
-                            int shortClipDuration = Integer.parseInt(parts[3]);
-                            ShortClip shortClip = new ShortClip(parts[0], parts[1], parts[2], shortClipDuration, parts[4]);
-                            playlist.addMedia(shortClip);
-
-                            // try-catch to report MediaNotFoundException
-                            try {
-                                ArrayList<String> captions = handleCaptionFile("data/mediatext/" + parts[4], mediaType);
-                                if (captions != null) {
-                                    for (String caption : captions) {
-                                        System.out.println(caption);
-                                    }
-                                }
-                            } catch (MediaNotFoundException e) {
-                                System.err.println(e.getMessage());
-                            }
-                            
-                            break;
-                    } 
+                    Media media = MediaParser.parse(parts, mediaType, registry);
+                    if (media != null) {
+                        playlist.addMedia(media); //Adds the media to the playlist
+                        registry.register(media);
+                        loadCaption(media, mediaType, log);
+                    }
                 } catch (NumberFormatException e) {
-                    System.err.println("Duration in mins not in correct format. Skipping this line.");
+                    reject(log, e, "Duration in mins not in correct format. Skipping this line.", filename, lines, parts.getLine());
+                    clean = false;
                 } catch (InvalidLineException | InvalidFormatException | PlaylistFullException e) {
-                    System.err.println(e.getMessage());
+                    reject(log, e, e.getMessage(), filename, lines, parts.getLine());
+                    clean = false;
                 }            
             }
+            if (clean) {
+                playlist.markClean();
+            }
         } catch (FileNotFoundException e) {
-            System.err.println("Invalid or missing file.");
+            log.err("Invalid or missing file.");
+        } catch (IOException e) {
+            log.err(e.getMessage());
         } finally{
-            if(inputStream != null) {
-                inputStream.close();
+            if (inputStream != null) {
+                metrics.fileRead(inputStream.getBytesRead(), lines);
             }
+            closeQuietly(inputStream);
+            metrics.record(LoadMetrics.LOAD_MEDIA_FILE, start);
         }
     }
 
+    // A skipped row goes to the log, or into the summary while loading with -Dmusify.errors=summary.
+    private void reject(LoadLog log, Exception e, String message, String source, long lineNumber, String line) {
+        metrics.rejected(e);
+        ErrorReport report = errorReport;
+        if (report != null) {
+            log.reject(report, message, source, lineNumber, line);
+        } else {
+            log.err(message);
+        }
+    }
 
-    private ArrayList<String> handleCaptionFile(String filename, String mediaType) throws MediaNotFoundException {
-        Scanner inputStream = null;
-        ArrayList<String> captions = new ArrayList<>();
-        try {
-            inputStream = new Scanner(new FileInputStream(filename));
-            while (inputStream.hasNextLine()) {
-                String line = inputStream.nextLine();
-                captions.add(line);
+    private void missingCaption(LoadLog log, Media media) {
+        ErrorReport report = errorReport;
+        if (report != null) {
+            log.reject(report, "Invalid or missing caption file.", media.getCaption().getFile().getPath(), 0, media.getName());
+        } else {
+            log.out("Invalid or missing caption file.");
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing left to read from it
             }
-            if (captions.isEmpty()) {
-                throw new MediaNotFoundException(getMediaMessage(mediaType));
+        }
+    }
+
+
+    private void loadCaption(Media media, String mediaType, LoadLog log) {
+        switch (captionMode) {
+            case Constants.CAPTIONS_LAZY:
+                return;
+            case Constants.CAPTIONS_CHECK:
+                if (!media.getCaption().exists()) {
+                    missingCaption(log, media);
+                }
+                return;
+        }
+        // try-catch to report MediaNotFoundException
+        try {
+            List<String> captions = handleCaptionFile(media, mediaType, log);
+            if (captions != null) {
+                for (String caption : captions) {
+                    log.out(caption);
+                }
             }
+        } catch (MediaNotFoundException e) {
+            log.err(e.getMessage());
+        }
+    }
+
+    private List<String> handleCaptionFile(Media media, String mediaType, LoadLog log) throws MediaNotFoundException {
+        long start = System.nanoTime();
+        Caption caption = media.getCaption();
+        boolean cached = caption.isLoaded();
+        List<String> captions;
+        try {
+            captions = caption.getLines();
         } catch (FileNotFoundException e) {
-            System.out.println("Invalid or missing caption file.");
+            missingCaption(log, media);
+            metrics.missingCaptionFile();
             return null;
+        } catch (IOException e) {
+            throw new MediaNotFoundException(getMediaMessage(mediaType));
         } finally {
-            if (inputStream != null) {
-                inputStream.close();
-            }
+            metrics.record(LoadMetrics.LOAD_CAPTION, start);
+        }
+        if (!cached) {
+            metrics.captionMiss();
+            metrics.fileRead(caption.getFile().length(), captions.size());
+        }
+        if (captions.isEmpty()) {
+            throw new MediaNotFoundException(getMediaMessage(mediaType));
         }
         return captions;
     }
@@ -211,6 +503,121 @@ public class MusifyApp {
         return "Media not found."; //
     }
 
+    /**
+     * Headless mode: runs one command per line from a script through the same
+     * operations as the menus, then prints how long each kind of command took.
+     *
+     * Fields are separated by '|', since media rows contain commas:
+     *   create|name|type|file    add|playlist|media row    remove|playlist|title
+     *   delete|playlist    view|playlist    list    play|playlist
+     *   search|words    lyric|text    longest|n    duration|min|max    filter|facets|max mins
+     *   queue|playlist,playlist|Y or N to shuffle|times    save    metrics
+     */
+    private void runScript(String source) {
+        LinkedHashMap<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+        long started = System.nanoTime();
+        int commands = 0;
+        try (BufferedReader script = new BufferedReader(source.equals("-") ? new InputStreamReader(System.in) : new FileReader(source))) {
+            String line;
+            while ((line = script.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\|", -1);
+                long start = System.nanoTime();
+                runScriptCommand(fields);
+                latencies.computeIfAbsent(fields[0].toLowerCase(), k -> new LatencyHistogram()).record(System.nanoTime() - start);
+                commands++;
+            }
+        } catch (IOException e) {
+            System.err.println("Invalid or missing file.");
+        }
+        long elapsed = System.nanoTime() - started;
+
+        SCRIPT_SUMMARY_HEADER.appendRow(page, "Command", "Count", "Total ms", "Mean us", "p50 us", "p99 us", "Max us", "Ops/s");
+        page.append("--------------------------------------------------------------------------------------------").append(System.lineSeparator());
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            long totalNanos = Math.max(1, histogram.getTotalNanos());
+            SCRIPT_SUMMARY_ROW.appendRow(page, entry.getKey(), histogram.getCount(), totalNanos / 1000000,
+                    histogram.getMeanNanos() / 1000, histogram.getPercentileNanos(50) / 1000, histogram.getPercentileNanos(99) / 1000,
+                    histogram.getMaxNanos() / 1000, histogram.getCount() * 1000000000L / totalNanos);
+        }
+        page.append("Ran ").append(commands).append(" commands in ").append(elapsed / 1000000).append(" ms.").append(System.lineSeparator());
+        flushPage();
+    }
+
+    private void runScriptCommand(String[] fields) {
+        String command = fields[0].toLowerCase();
+        try {
+            Playlist playlist = fields.length > 1 ? playlists.find(fields[1]) : null;
+            if (playlist == null && (command.equals("add") || command.equals("remove") || command.equals("view") || command.equals("play"))) {
+                System.out.println("No such playlist found with name: " + fields[1]);
+                return;
+            }
+            switch (command) {
+                case "create":
+                    createPlaylist(fields[1], fields[2], fields[3]);
+                    break;
+                case "add":
+                    Media media = MediaParser.parse(fields[2], playlist.getMediaType().toUpperCase());
+                    if (media != null) {
+                        addMedia(playlist, media);
+                        persistEdit(playlist);
+                    }
+                    break;
+                case "remove":
+                    removeMedia(playlist, fields[2]);
+                    persistEdit(playlist);
+                    break;
+                case "delete":
+                    deletePlaylist(fields[1]);
+                    break;
+                case "view":
+                    viewMedialistContents(null, playlist);
+                    break;
+                case "list":
+                    viewAllPlaylists(null);
+                    break;
+                case "play":
+                    playPlaylist(playlist);
+                    break;
+                case "search":
+                    printSearchResults(fields[1]);
+                    break;
+                case "lyric":
+                    printLyricMatches(fields[1]);
+                    break;
+                case "save":
+                    savePlaylist(new String[0]);
+                    break;
+                case "longest":
+                    printPlaytime(Integer.parseInt(fields[1]), null);
+                    break;
+                case "duration":
+                    printDurationRange(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), null);
+                    break;
+                case "filter":
+                    printFacetMatches(fields[1], fields.length > 2 ? Integer.parseInt(fields[2]) : 0, null);
+                    break;
+                case "queue":
+                    playQueueOfPlaylists(fields[1], fields.length > 2 && fields[2].equalsIgnoreCase("Y"), fields.length > 3 ? Integer.parseInt(fields[3]) : 1);
+                    break;
+                case "metrics":
+                    System.out.print(metrics.dump());
+                    break;
+                default:
+                    System.out.println(Constants.INVALID_INPUT + ": " + fields[0]);
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.out.println(Constants.INVALID_INPUT + ": " + String.join("|", fields));
+        } catch (NumberFormatException e) {
+            System.err.println("Duration in mins not in correct format. Skipping this line.");
+        } catch (InvalidLineException | InvalidFormatException | PlaylistFullException | MediaNotFoundException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
     /**
      * Main Menu
      */
@@ -227,7 +634,7 @@ public class MusifyApp {
                     createNewPlaylist(keyboard);
                     break;
                 case Constants.VIEW_PLAYLIST:
-                    viewAllPlaylists();
+                    viewAllPlaylists(keyboard);
                     break;
                 case Constants.VIEW_CONTENTS:
                     viewPlaylistContents(keyboard);
@@ -251,6 +658,28 @@ public class MusifyApp {
                     System.out.println("Exiting Musify. Goodbye, " + userName + ".");
                     exit = true;
                     break;
+                case Constants.SEARCH_MEDIA:
+                    searchMedia(keyboard);
+                    break;
+                case Constants.FIND_BY_LYRIC:
+                    findByLyric(keyboard);
+                    break;
+                case Constants.SHOW_PLAYTIME:
+                    showPlaytime(keyboard);
+                    break;
+                case Constants.FIND_BY_DURATION:
+                    findByDuration(keyboard);
+                    break;
+                case Constants.FILTER_BY_FACETS:
+                    filterByFacets(keyboard);
+                    break;
+                case Constants.PLAY_QUEUE:
+                    try {
+                        playQueueOfPlaylists(keyboard);
+                    } catch (MediaNotFoundException e) {
+                        System.out.println(e.getMessage());
+                    }
+                    break;
                 default:
                     System.out.println(Constants.INVALID_INPUT);
 
@@ -267,6 +696,12 @@ public class MusifyApp {
         System.out.println("5. Modify a playlist.");
         System.out.println("6. Play contents of a playlist.");
         System.out.println("7. Exit Musify.");
+        System.out.println("8. Search media.");
+        System.out.println("9. Find media by a lyric line.");
+        System.out.println("10. Show playtime and longest media.");
+        System.out.println("11. Find media by duration.");
+        System.out.println("12. Filter media by type, genre or category.");
+        System.out.println("13. Play a queue of playlists.");
     }
 
     private void displayWelcomeMessage() {
@@ -278,33 +713,57 @@ public class MusifyApp {
         //
         System.out.print("Enter Playlist Name: ");
         String playlistName = keyboard.nextLine();
+        if (playlists.contains(playlistName)) {
+            System.out.println("A playlist already exists with name: " + playlistName);
+            return;
+        }
         System.out.print("Enter Playlist Type: ");
         String playlistType = keyboard.nextLine();
         System.out.print("Enter a filename to save the playlist: ");
         String filename = keyboard.nextLine();
         
+        Playlist newPlaylist = createPlaylist(playlistName, playlistType, filename);
+        if (newPlaylist == null) {
+            return;
+        }
+
+        System.out.println("Add some " + playlistType + " to your Playlist.");
+        boolean addingMedia = true;
+        while (addingMedia) {
+            System.out.print("Enter A to add a " + playlistType + " to the playlist or Q to quit adding: ");
+            String choice = keyboard.nextLine();
+            if (choice.equalsIgnoreCase(Constants.QUIT_KEY)) {
+                addingMedia = false;
+            } else if (choice.equalsIgnoreCase(Constants.ADD_KEY)) {
+                addMediaToPlaylist(keyboard, newPlaylist, playlistType);
+            }
+        }
+        // save the new playlist file
+        persistEdit(newPlaylist);
+    }
+
+    private Playlist createPlaylist(String playlistName, String playlistType, String filename) {
         try {
             Playlist newPlaylist = new Playlist(playlistName, playlistType, filename);
-            playlists.add(newPlaylist);
-
-            System.out.println("Add some " + playlistType + " to your Playlist.");
-            boolean addingMedia = true;
-            while (addingMedia) {
-                System.out.print("Enter A to add a " + playlistType + " to the playlist or Q to quit adding: ");
-                String choice = keyboard.nextLine();
-                if (choice.equalsIgnoreCase(Constants.QUIT_KEY)) {
-                    addingMedia = false;
-                } else if (choice.equalsIgnoreCase(Constants.ADD_KEY)) {
-                    addMediaToPlaylist(keyboard, newPlaylist, playlistType);
-                }
+            if (!playlists.add(newPlaylist)) {
+                System.out.println("A playlist already exists with name: " + playlistName);
+                return null;
             }
-            // save the new playlist file
-            savePlaylistFile(newPlaylist);
+            indexDirty = true;
+            membershipChanged = true;
+            record(j -> j.createPlaylist(newPlaylist));
+            return newPlaylist;
         } catch(InvalidFormatException e) {
             System.err.println(e.getMessage());
+            return null;
         }
     }
 
+    private void addMedia(Playlist playlist, Media media) throws PlaylistFullException {
+        playlist.addMedia(media);
+        record(j -> j.addMedia(playlist, media));
+    }
+
     private void addMediaToPlaylist(Scanner keyboard, Playlist playlist, String mediaType) {
         try {
             switch (mediaType.toUpperCase()) {
@@ -342,7 +801,7 @@ public class MusifyApp {
                     }
 
                     Song song = new Song(songTitle, songDescription, artists, genre, songDuration, songCaptionFileName);
-                    playlist.addMedia(song);
+                    addMedia(playlist, song);
                     break;
                 case Constants.PODCAST:
                     System.out.print("Enter the title: ");
@@ -384,7 +843,7 @@ public class MusifyApp {
 
                     keyboard.nextLine(); // newline
                     Podcast podcast = new Podcast(podcastTitle, podcastDescription, hosts, category, seriesName, episodeNumber, podcastDuration, podcastCaptionFileName);
-                    playlist.addMedia(podcast);
+                    addMedia(playlist, podcast);
                     break;
                     
                 case Constants.SHORTCLIP:
@@ -408,7 +867,7 @@ public class MusifyApp {
                     String artistName = keyboard.nextLine();
 
                     ShortClip shortClip = new ShortClip(shortClipTitle, shortClipDescription, artistName, shortClipDuration, shortClipCaptionFileName);
-                    playlist.addMedia(shortClip);
+                    addMedia(playlist, shortClip);
                     break;
             }
         } catch (InvalidFormatException | PlaylistFullException e) {
@@ -424,20 +883,27 @@ public class MusifyApp {
     }
 
     // Option 2
-    private void viewAllPlaylists() {
+    private void viewAllPlaylists(Scanner keyboard) {
         // No Playlist found
         if (playlists.isEmpty()) {
             System.out.println("No playlists found.");
             return;
         }
         
-        System.out.println("Here are your playlists-");
-        System.out.printf(Constants.PLAYLIST_HEADER_FORMATTER, "#", "Type", "Playlist Name");
-        System.out.println("----------------------------------------------");
-        for (int i = 0; i < playlists.size(); i++) {
-            Playlist playlist = playlists.get(i);
-            System.out.printf(Constants.PLAYLIST_FORMATTER, i + 1, playlist.getMediaType(), playlist.getName());
+        page.append("Here are your playlists-").append(System.lineSeparator());
+        PLAYLIST_HEADER.appendRow(page, "#", "Type", "Playlist Name");
+        page.append("----------------------------------------------").append(System.lineSeparator());
+        int i = 0;
+        Iterator<Playlist> iterator = playlists.iterator();
+        while (iterator.hasNext()) {
+            Playlist playlist = iterator.next();
+            PLAYLIST_ROW.appendRow(page, i + 1, playlist.getMediaType(), playlist.getName());
+            i++;
+            if (!endRow(keyboard, iterator.hasNext())) {
+                return;
+            }
         }
+        flushPage();
     }
 
     // Option 3
@@ -450,24 +916,19 @@ public class MusifyApp {
         System.out.print("Enter Playlist Name: ");
         String playlistName = keyboard.nextLine();
 
-        Playlist playlist = null;
-        for (Playlist p : playlists) {
-            if (p.getName().equalsIgnoreCase(playlistName)) {
-                playlist = p;
-                break;
-            }
-        }
+        Playlist playlist = playlists.find(playlistName);
         // Incorrect Playlist as input
         if (playlist == null) {
             System.out.println("No such playlist found with name: " + playlistName);
             return;
         }
         // View playlist in the option 5
-        viewMedialistContents(playlist);
+        viewMedialistContents(keyboard, playlist);
     }
 
-    private void viewMedialistContents(Playlist playlist) {
-        ArrayList<Media> mediaList = playlist.getMediaList();
+    private void viewMedialistContents(Scanner keyboard, Playlist playlist) {
+        // a stable copy, so the pages stay consistent while the user reads them
+        List<Media> mediaList = playlist.snapshot().getMediaList();
         if (mediaList.isEmpty()) {
             System.out.println("No " + playlist.getMediaType().toLowerCase() + " in the playlist to view.");
             return;
@@ -476,31 +937,60 @@ public class MusifyApp {
         String mediaType = playlist.getMediaType().toUpperCase();
         switch(mediaType) {
             case Constants.SONG:
-                System.out.printf(Constants.SONG_PLAYLIST_HEADER, "Id", "Title", "Artist Name", "Description", "Genre", "Duration In Mins");
-                System.out.println("-----------------------------------------------------------------------------------------------------------------------------");
-                for (int i = 0; i < mediaList.size(); i++) {
-                    Song song = (Song) mediaList.get(i); // object
-                    System.out.printf(Constants.SONG_PLAYLIST_DATA_FORMATTER, i + 1, song.getName(), String.join(",", song.getArtists()), song.getDescription(), song.getGenre(), song.getDuration());
-                }
+                SONG_HEADER.appendRow(page, "Id", "Title", "Artist Name", "Description", "Genre", "Duration In Mins");
+                page.append("-----------------------------------------------------------------------------------------------------------------------------").append(System.lineSeparator());
                 break;
             case Constants.PODCAST:
-                System.out.printf(Constants.PODCAST_PLAYLIST_HEADER, "Id", "Title", "Host Name(s)", "Description", "Category", "Series Name", "Episode#", "Duration In Mins");
-                System.out.println("----------------------------------------------------------------------------------------------------------------------------------------------------------------");
-                for (int i = 0; i < mediaList.size(); i++) {
-                    Podcast podcast = (Podcast) mediaList.get(i); // object
-                    System.out.printf(Constants.PODCAST_DATA_FORMATTER, i + 1, podcast.getName(), String.join(",", podcast.getHosts()), podcast.getDescription(), podcast.getCategory(), podcast.getSeriesName(), podcast.getEpisodeNumber(), podcast.getDuration());
-                }
+                PODCAST_HEADER.appendRow(page, "Id", "Title", "Host Name(s)", "Description", "Category", "Series Name", "Episode#", "Duration In Mins");
+                page.append("----------------------------------------------------------------------------------------------------------------------------------------------------------------").append(System.lineSeparator());
                 break;
             case Constants.SHORTCLIP:
-                System.out.printf(Constants.SHORTCLIP_PLAYLIST_HEADER, "Id", "Title", "Artist Name", "Description", "Duration In Mins");
-                System.out.println("-----------------------------------------------------------------------------------------------------------------------------");
-                for (int i = 0; i < mediaList.size(); i++) {
-                    ShortClip shortClip = (ShortClip) mediaList.get(i); // object
-                    System.out.printf(Constants.SHORTCLIP_DATA_FORMATTER, i + 1, shortClip.getName(), shortClip.getArtistName(), shortClip.getDescription(), shortClip.getDuration());
-                }
+                SHORTCLIP_HEADER.appendRow(page, "Id", "Title", "Artist Name", "Description", "Duration In Mins");
+                page.append("-----------------------------------------------------------------------------------------------------------------------------").append(System.lineSeparator());
                 break;
+            default:
+                return;
+        }
+
+        int i = 0;
+        Iterator<Media> iterator = mediaList.iterator();
+        while (iterator.hasNext()) {
+            Media media = iterator.next();
+            if (media instanceof Song) {
+                Song song = (Song) media; // object
+                SONG_ROW.appendRow(page, i + 1, song.getName(), String.join(",", song.getArtists()), song.getDescription(), song.getGenre(), song.getDuration());
+            } else if (media instanceof Podcast) {
+                Podcast podcast = (Podcast) media; // object
+                PODCAST_ROW.appendRow(page, i + 1, podcast.getName(), String.join(",", podcast.getHosts()), podcast.getDescription(), podcast.getCategory(), podcast.getSeriesName(), podcast.getEpisodeNumber(), podcast.getDuration());
+            } else if (media instanceof ShortClip) {
+                ShortClip shortClip = (ShortClip) media; // object
+                SHORTCLIP_ROW.appendRow(page, i + 1, shortClip.getName(), shortClip.getArtistName(), shortClip.getDescription(), shortClip.getDuration());
+            }
+            i++;
+            if (!endRow(keyboard, iterator.hasNext())) {
+                return;
+            }
+        }
+        flushPage();
+    }
+
+    // Counts a row into the page. Once the page is full and more rows follow,
+    // prints it and asks whether to carry on.
+    private boolean endRow(Scanner keyboard, boolean more) {
+        pageRows++;
+        if (!more || keyboard == null || pageSize <= 0 || pageRows < pageSize) {
+            return true;
         }
+        flushPage();
+        System.out.print("Press Enter for more or Q to stop: ");
+        return !keyboard.nextLine().equalsIgnoreCase(Constants.QUIT_KEY);
+    }
 
+    // Writes the buffered page in a single call.
+    private void flushPage() {
+        System.out.print(page);
+        page.setLength(0);
+        pageRows = 0;
     }
 
     // Option 4
@@ -512,14 +1002,11 @@ public class MusifyApp {
         }
         System.out.print("Enter Playlist Name: ");
         String playlistName = keyboard.nextLine();
+        deletePlaylist(playlistName);
+    }
 
-        Playlist playlistToRemove = null;
-        for (Playlist p : playlists) {
-            if (p.getName().equalsIgnoreCase(playlistName)) {
-                playlistToRemove = p;
-                break;
-            }
-        }
+    private void deletePlaylist(String playlistName) {
+        Playlist playlistToRemove = playlists.find(playlistName);
 
         // Incorrect Playlist as input
         if (playlistToRemove == null) {
@@ -527,8 +1014,12 @@ public class MusifyApp {
             return;
         }
 
-        playlists.remove(playlistToRemove);
-        String filename = "data/playlist" + playlistToRemove.getFileName();
+        playlists.remove(playlistToRemove.getName());
+        indexDirty = true;
+        membershipChanged = true;
+        Playlist removed = playlistToRemove;
+        record(j -> j.removePlaylist(removed));
+        String filename = Constants.PLAYLIST_DIR + playlistToRemove.getFileName();
         File file = new File(filename);
         if (file.exists()) {
             file.delete();
@@ -559,13 +1050,7 @@ public class MusifyApp {
         System.out.print("Enter Playlist Name: ");
         String playlistName = keyboard.nextLine();
 
-        Playlist playlistToModify = null;
-        for (Playlist p : playlists) {
-            if (p.getName().equalsIgnoreCase(playlistName)) {
-                playlistToModify = p;
-                break;
-            }
-        }
+        Playlist playlistToModify = playlists.find(playlistName);
         // Incorrect Playlist as input
         if (playlistToModify == null) {
             System.out.println("No such playlist found with name: " + playlistName);
@@ -581,15 +1066,15 @@ public class MusifyApp {
 
             switch(subOption) {
                 case Constants.SUBMENU_VIEW_PLAYLIST:
-                    viewMedialistContents(playlistToModify);
+                    viewMedialistContents(keyboard, playlistToModify);
                     break;
                 case Constants.ADD_MEDIA:
                     addMediaToPlaylist(keyboard, playlistToModify, mediaType);
-                    savePlaylistFile(playlistToModify);
+                    persistEdit(playlistToModify);
                     break;
                 case Constants.REMOVE_MEDIA:
                     removeMediaFromPlaylist(keyboard, playlistToModify);
-                    savePlaylistFile(playlistToModify);
+                    persistEdit(playlistToModify);
                     break;
                 case Constants.QUIT_SUBMENU:
                     backToMain = true;
@@ -602,28 +1087,25 @@ public class MusifyApp {
     // Option 5: Scenario 3: remove the media
     private void removeMediaFromPlaylist(Scanner keyboard, Playlist playlist) {
         // remove media from an empty playlist
-        if (playlist.getMediaList().isEmpty()) {
+        if (playlist.isEmpty()) {
             System.out.println("The playlist is empty. No media to remove.");
             return;
         }
 
         System.out.print("Enter the " + playlist.getMediaType().toLowerCase() + " to remove: ");
         String mediaTitle = keyboard.nextLine();
+        removeMedia(playlist, mediaTitle);
+    }
 
-        Media mediaToRemove = null;
-        for (Media media : playlist.getMediaList()) {
-            if (media.getName().equalsIgnoreCase(mediaTitle)) {
-                mediaToRemove = media;
-                break;
-            }
-        }
+    private void removeMedia(Playlist playlist, String mediaTitle) {
+        Media mediaToRemove = playlist.removeMedia(mediaTitle);
         // remove media that doesn't exist in the playlist
         if (mediaToRemove == null) {
             System.out.println("No such media found with title: " + mediaTitle);
             return;
         }
 
-        playlist.getMediaList().remove(mediaToRemove);
+        record(j -> j.removeMedia(playlist, mediaToRemove));
         System.out.println("Media removed successfully.");
 
     }
@@ -638,88 +1120,412 @@ public class MusifyApp {
         System.out.print("Enter Playlist Name: ");
         String playlistName = keyboard.nextLine();
 
-        Playlist playlistToPlay = null;
-        for (Playlist p : playlists) {
-            if (p.getName().equalsIgnoreCase(playlistName)) {
-                playlistToPlay = p;
-                break;
-            }
-        }
+        Playlist playlistToPlay = playlists.find(playlistName);
         // Incorrect Playlist as input
         if (playlistToPlay == null) {
             System.out.println("No such playlist found with name: " + playlistName);
             return;
         }
+        playPlaylist(playlistToPlay);
+    }
 
-        ArrayList<Media> mediaList = playlistToPlay.getMediaList();
-        for (Media media : mediaList) {
+    private void playPlaylist(Playlist playlistToPlay) throws MediaNotFoundException {
+        try (PlaybackQueue queue = new PlaybackQueue(prefetchDepth)) {
+            queue.add(playlistToPlay);
+            playQueue(queue);
+        }
+    }
+
+    // Plays until the queue runs out, or until an item's captions cannot be shown.
+    private void playQueue(PlaybackQueue queue) throws MediaNotFoundException {
+        PlaylistEntry entry;
+        while ((entry = queue.next()) != null) {
+            queue.awaitCaption(entry);
+            Media media = entry.getMedia();
             System.out.println("-----------------------------------------------------------------------------------");
             if (media instanceof Song) {
                 Song song = (Song) media;
                 System.out.println("Playing Song: " + song.getName() + " by " + String.join(",", song.getArtists()) + " for " + song.getDuration() + " mins.");
-                ArrayList<String> captions = handleCaptionFile("data/mediatext/" + song.getCaptionFileName(), Constants.SONG);
-                if (captions == null) {
-                    throw new MediaNotFoundException(getMediaMessage(Constants.SONG));
-                } else {
-                    System.out.println("Here are the lyrics to sing along.");
-                    for (String line : captions) {
-                        System.out.println(line);
-                    }
-                }              
+                playCaption(song, Constants.SONG, "Here are the lyrics to sing along.");
             } else if (media instanceof Podcast) {
                 Podcast podcast = (Podcast) media;
                 System.out.println("Playing Podcast: " + podcast.getName() + " by " + String.join(",", podcast.getHosts()) + " for " + podcast.getDuration() + " mins. This podcast is about " + podcast.getDescription());
-                ArrayList<String> captions = handleCaptionFile("data/mediatext/" + podcast.getCaptionFileName(), Constants.PODCAST);
-                if (captions == null) {
-                    throw new MediaNotFoundException(getMediaMessage(Constants.PODCAST));
-                } else {
-                    System.out.println("Here are the contents of the podcast.");
-                    for (String line : captions) {
-                        System.out.println(line);
-                    }
-                }
+                playCaption(podcast, Constants.PODCAST, "Here are the contents of the podcast.");
             } else if (media instanceof ShortClip) {
                 ShortClip shortClip = (ShortClip) media;
                 System.out.println("Playing short clip: " + shortClip.getName() + " by " + shortClip.getArtistName() + " for " + shortClip.getDuration() + " mins.");
                 
-                ArrayList<String> captions = handleCaptionFile("data/mediatext/" + shortClip.getCaptionFileName(), Constants.SHORTCLIP);
-                if (captions == null) {
-                    throw new MediaNotFoundException(getMediaMessage(Constants.SHORTCLIP));
-                } else {
-                    System.out.println("Here are the contents of the short clip.");
-                    for (String line : captions) {
-                        System.out.println(line);
-                    }
-                }
+                playCaption(shortClip, Constants.SHORTCLIP, "Here are the contents of the short clip.");
             }
             System.out.println("-----------------------------------------------------------------------------------");
         }
-        
     }
 
+    // Option 13
+    private void playQueueOfPlaylists(Scanner keyboard) throws MediaNotFoundException {
+        if (playlists.isEmpty()) {
+            System.out.println("No playlists found.");
+            return;
+        }
+        System.out.print("Enter Playlist Names separated by commas: ");
+        String playlistNames = keyboard.nextLine();
+        System.out.print("Shuffle? (Y/N): ");
+        boolean shuffle = keyboard.nextLine().trim().equalsIgnoreCase("Y");
+        System.out.print("How many times to play the queue: ");
+        int passes = keyboard.nextInt();
+        keyboard.nextLine();
+        playQueueOfPlaylists(playlistNames, shuffle, passes);
+    }
+
+    private void playQueueOfPlaylists(String playlistNames, boolean shuffle, int passes) throws MediaNotFoundException {
+        if (passes < 1) {
+            System.out.println(Constants.INVALID_INPUT);
+            return;
+        }
+        try (PlaybackQueue queue = new PlaybackQueue(prefetchDepth)) {
+            for (String playlistName : playlistNames.split(",")) {
+                Playlist playlist = playlists.find(playlistName.trim());
+                if (playlist == null) {
+                    System.out.println("No such playlist found with name: " + playlistName.trim());
+                    return;
+                }
+                queue.add(playlist);
+            }
+            queue.setShuffle(shuffle);
+            queue.setPasses(passes);
+            try {
+                playQueue(queue);
+            } finally {
+                System.out.println(queue);
+            }
+        }
+    }
+
+
+    // Small captions come from the cache; larger ones are streamed straight to the console.
+    private void playCaption(Media media, String mediaType, String intro) throws MediaNotFoundException {
+        Caption caption = media.getCaption();
+        File file = caption.getFile();
+        if (!caption.isLoaded() && file.length() > Constants.STREAM_CAPTION_BYTES) {
+            System.out.println(intro);
+            try {
+                CaptionStreamer.copy(file, System.out);
+            } catch (IOException e) {
+                throw new MediaNotFoundException(getMediaMessage(mediaType));
+            }
+            return;
+        }
+        List<String> captions = handleCaptionFile(media, mediaType, LoadLog.console());
+        if (captions == null) {
+            throw new MediaNotFoundException(getMediaMessage(mediaType));
+        }
+        System.out.println(intro);
+        for (String line : captions) {
+            System.out.println(line);
+        }
+    }
+
+
+    // Option 8
+    private void searchMedia(Scanner keyboard) {
+        System.out.print("Enter words to search for: ");
+        printSearchResults(keyboard.nextLine());
+    }
+
+    private void printSearchResults(String query) {
+        List<SearchIndex.Hit> hits = searchIndex.search(query, Constants.SEARCH_RESULT_LIMIT);
+        if (hits.isEmpty()) {
+            System.out.println("No media found matching: " + query);
+            return;
+        }
+        SEARCH_HEADER.appendRow(page, "Id", "Title", "Type", "Playlist Name", "Score");
+        page.append("------------------------------------------------------------------------------------").append(System.lineSeparator());
+        for (int i = 0; i < hits.size(); i++) {
+            SearchIndex.Hit hit = hits.get(i);
+            SEARCH_ROW.appendRow(page, i + 1, hit.getMedia().getName(), hit.getPlaylist().getMediaType(), hit.getPlaylist().getName(), hit.getScore());
+        }
+        flushPage();
+    }
+
+    // Option 9
+    private void findByLyric(Scanner keyboard) {
+        System.out.print("Enter part of a lyric or caption line: ");
+        printLyricMatches(keyboard.nextLine());
+    }
+
+    private void printLyricMatches(String text) {
+        List<CaptionIndex.Match> matches;
+        try {
+            matches = captionIndex.find(text, Constants.SEARCH_RESULT_LIMIT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (matches.isEmpty()) {
+            System.out.println("No media found with a line containing: " + text);
+            return;
+        }
+        for (CaptionIndex.Match match : matches) {
+            page.append(match.getMedia().getName()).append(" in ").append(match.getPlaylist().getName())
+                .append(", line ").append(match.getLineNumber()).append(": ").append(match.getLine())
+                .append(System.lineSeparator());
+        }
+        flushPage();
+    }
+
+    // Option 10
+    private void showPlaytime(Scanner keyboard) {
+        System.out.print("Enter how many of the longest media to show: ");
+        int limit = keyboard.nextInt();
+        keyboard.nextLine();
+        printPlaytime(limit, keyboard);
+    }
+
+    private void printPlaytime(int limit, Scanner keyboard) {
+        if (playlists.isEmpty()) {
+            System.out.println("No playlists found.");
+            return;
+        }
+        PLAYTIME_HEADER.appendRow(page, "Playlist Name", "Media", "Total Mins");
+        page.append("-------------------------------------------------------").append(System.lineSeparator());
+        for (Playlist playlist : playlists) {
+            PLAYTIME_ROW.appendRow(page, playlist.getName(), playlist.size(), playlist.getTotalDuration());
+        }
+        page.append("Total playtime: ").append(durationIndex.getTotalDuration()).append(" mins across ")
+            .append(durationIndex.getCount()).append(" media.").append(System.lineSeparator());
+        printDurationItems(durationIndex.longest(limit), keyboard);
+    }
+
+    // Option 11
+    private void findByDuration(Scanner keyboard) {
+        System.out.print("Enter the shortest duration in mins: ");
+        int min = keyboard.nextInt();
+        System.out.print("Enter the longest duration in mins: ");
+        int max = keyboard.nextInt();
+        keyboard.nextLine();
+        printDurationRange(min, max, keyboard);
+    }
+
+    private void printDurationRange(int min, int max, Scanner keyboard) {
+        List<PlaylistEntry> items = durationIndex.between(min, max, Integer.MAX_VALUE);
+        if (items.isEmpty()) {
+            System.out.println("No media found lasting " + min + " to " + max + " mins.");
+            return;
+        }
+        printDurationItems(items, keyboard);
+    }
+
+    private void printDurationItems(List<PlaylistEntry> items, Scanner keyboard) {
+        DURATION_HEADER.appendRow(page, "Id", "Title", "Type", "Playlist Name", "Mins");
+        page.append("------------------------------------------------------------------------------------").append(System.lineSeparator());
+        for (int i = 0; i < items.size(); i++) {
+            PlaylistEntry item = items.get(i);
+            DURATION_ROW.appendRow(page, i + 1, item.getMedia().getName(), item.getPlaylist().getMediaType(),
+                    item.getPlaylist().getName(), item.getMedia().getDuration());
+            if (!endRow(keyboard, i + 1 < items.size())) {
+                return;
+            }
+        }
+        flushPage();
+    }
+
+    // Option 12
+    private void filterByFacets(Scanner keyboard) {
+        System.out.print("Enter media types, genres or categories separated by spaces, or leave blank for all: ");
+        String facets = keyboard.nextLine();
+        System.out.print("Enter the longest duration in mins, or 0 for any: ");
+        int maxDuration = keyboard.nextInt();
+        keyboard.nextLine();
+        printFacetMatches(facets, maxDuration, keyboard);
+    }
+
+    private void printFacetMatches(String facetNames, int maxDuration, Scanner keyboard) {
+        ArrayList<Enum<?>> facets = new ArrayList<>();
+        for (String name : facetNames.trim().split("\\s+")) {
+            if (name.isEmpty()) {
+                continue;
+            }
+            Enum<?> facet = MediaType.parse(name);
+            if (facet == null) {
+                facet = Genre.parse(name);
+            }
+            if (facet == null) {
+                facet = Category.parse(name);
+            }
+            if (facet == null) {
+                System.out.println("Unknown media type, genre or category: " + name);
+                return;
+            }
+            facets.add(facet);
+        }
+
+        // counts of every facet value within the filter, grouped by kind
+        Class<?> kind = null;
+        for (Map.Entry<Enum<?>, Integer> count : facetIndex.counts(facets).entrySet()) {
+            Class<?> countKind = count.getKey().getDeclaringClass();
+            if (countKind != kind) {
+                if (kind != null) {
+                    page.append(System.lineSeparator());
+                }
+                page.append(countKind.getSimpleName()).append(':');
+                kind = countKind;
+            }
+            page.append(' ').append(count.getKey()).append(' ').append(count.getValue());
+        }
+        page.append(System.lineSeparator());
+
+        List<PlaylistEntry> entries = facetIndex.filter(facets, 1, maxDuration > 0 ? maxDuration : Integer.MAX_VALUE);
+        if (entries.isEmpty()) {
+            flushPage();
+            System.out.println("No media found.");
+            return;
+        }
+        printDurationItems(entries, keyboard);
+    }
 
     // Option 7
     private void savePlaylist(String[] args) {
+        savePlaylist(args, true);
+    }
+
+    // report is false when compacting the journal in the middle of an edit
+    private void savePlaylist(String[] args, boolean report) {
+        long start = System.nanoTime();
+        try {
+            writePlaylists(args, report);
+        } finally {
+            metrics.record(LoadMetrics.SAVE, start);
+        }
+    }
+
+    private void writePlaylists(String[] args, boolean report) {
         String filename = args.length > 1 ? args[1] : "playlists.txt";
-        try (PrintWriter writer = new PrintWriter(new FileOutputStream(filename))) {
-            for (Playlist playlist : playlists) {
-                writer.println(playlist.toString());
-                savePlaylistFile(playlist);
+        int written = 0;
+        int skipped = 0;
+        boolean indexWritten = false;
+        // the index only needs rewriting if membership changed or it is not the file we loaded
+        if (indexDirty || !sameFile(filename, loadedIndexFile)) {
+            try (PrintWriter writer = new PrintWriter(new FileOutputStream(filename))) {
+                for (Playlist playlist : playlists) {
+                    writer.println(playlist.toString());
+                }
+                indexWritten = true;
+                indexDirty = false;
+            } catch (FileNotFoundException e) {
+                System.err.println(e.getMessage());
             }
-        } catch (FileNotFoundException e) {
+        }
+        boolean saved = !indexDirty;
+        // with a journal the files are staged and only replace the old ones when it commits
+        ArrayList<Playlist> staged = new ArrayList<>();
+        ArrayList<PlaylistSnapshot> contents = new ArrayList<>();
+        ArrayList<File> targets = new ArrayList<>();
+        for (Playlist playlist : playlists) {
+            if (!playlist.isDirty()) {
+                skipped++;
+                continue;
+            }
+            written++;
+            if (journal == null) {
+                saved &= savePlaylistFile(playlist);
+                continue;
+            }
+            File target = new File(Constants.PLAYLIST_DIR + playlist.getFileName());
+            PlaylistSnapshot snapshot = writePlaylistFile(playlist, Journal.staged(target));
+            if (snapshot == null) {
+                saved = false;
+                continue;
+            }
+            staged.add(playlist);
+            contents.add(snapshot);
+            targets.add(target);
+        }
+        if (report) {
+            System.out.println("Saved " + written + " playlist files, skipped " + skipped + " unchanged.");
+        }
+
+        // everything in the journal is now in the staged playlist files
+        if (journal != null) {
+            try {
+                if (!saved) {
+                    for (File target : targets) {
+                        Journal.staged(target).delete();
+                    }
+                    return;
+                }
+                journal.commit(targets);
+                for (int i = 0; i < staged.size(); i++) {
+                    staged.get(i).markClean(contents.get(i));
+                }
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+
+        // named after the loaded index, which is where startup looks for it;
+        // only rewritten when this session changed something it mirrors
+        if (loadedIndexFile == null || !edited || !saved) {
+            return;
+        }
+        File index = new File(loadedIndexFile);
+        if (indexWritten && sameFile(filename, loadedIndexFile)) {
+            indexRejections.clear();
+            membershipChanged = false;
+        }
+        // playlists were created or removed but the loaded index still lists the old set
+        if (membershipChanged) {
+            return;
+        }
+        File snapshot = new File(loadedIndexFile + Constants.SNAPSHOT_SUFFIX);
+        if (written == 0 && !indexWritten && snapshot.exists()) {
+            return;
+        }
+        try {
+            CatalogSnapshot.write(snapshot, index, playlists, indexRejections);
+        } catch (IOException e) {
             System.err.println(e.getMessage());
         }
     }
 
-    private void savePlaylistFile(Playlist playlist) {
-        String filename = "data/playlist/" + playlist.getFileName();
-        try (PrintWriter writer = new PrintWriter(new FileOutputStream(filename))) {
-            for (Media media : playlist.getMediaList()) {
+    private boolean sameFile(String filename, String otherFilename) {
+        if (otherFilename == null) {
+            return false;
+        }
+        try {
+            return new File(filename).getCanonicalPath().equals(new File(otherFilename).getCanonicalPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private boolean savePlaylistFile(Playlist playlist) {
+        PlaylistSnapshot snapshot = writePlaylistFile(playlist, new File(Constants.PLAYLIST_DIR + playlist.getFileName()));
+        if (snapshot == null) {
+            return false;
+        }
+        playlist.markClean(snapshot);
+        return true;
+    }
+
+    // Returns what was written, or null if the file could not be written.
+    private PlaylistSnapshot writePlaylistFile(Playlist playlist, File file) {
+        long start = System.nanoTime();
+        // written from a snapshot; a change made meanwhile leaves the playlist dirty
+        PlaylistSnapshot snapshot = playlist.snapshot();
+        try (PrintWriter writer = new PrintWriter(new FileOutputStream(file))) {
+            for (Media media : snapshot.getMediaList()) {
                 writer.println(media.toString());
             }
+            if (!writer.checkError()) {
+                return snapshot;
+            }
         } catch (FileNotFoundException e) {
             System.err.println(e.getMessage());
+        } finally {
+            metrics.record(LoadMetrics.SAVE_PLAYLIST_FILE, start);
         }
+        return null;
     }
 }
 
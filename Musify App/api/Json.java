@@ -0,0 +1,93 @@
+package api;
+
+import entities.*;
+import java.util.List;
+
+/**
+ * Writes the API's JSON responses. Output only; request bodies use the
+ * same comma separated rows as the playlist files.
+ */
+class Json {
+
+    private Json() {
+    }
+
+    static StringBuilder string(StringBuilder json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    static StringBuilder strings(StringBuilder json, List<String> values) {
+        json.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            string(json, values.get(i));
+        }
+        return json.append(']');
+    }
+
+    static StringBuilder field(StringBuilder json, String name) {
+        if (json.charAt(json.length() - 1) != '{') {
+            json.append(',');
+        }
+        return string(json, name).append(':');
+    }
+
+    static StringBuilder media(StringBuilder json, Media media) {
+        json.append('{');
+        string(field(json, "title"), media.getName());
+        string(field(json, "description"), media.getDescription());
+        field(json, "duration").append(media.getDuration());
+        string(field(json, "caption"), media.getCaptionFileName());
+        if (media instanceof Song) {
+            Song song = (Song) media;
+            strings(field(json, "artists"), song.getArtists());
+            string(field(json, "genre"), song.getGenreType().name());
+        } else if (media instanceof Podcast) {
+            Podcast podcast = (Podcast) media;
+            strings(field(json, "hosts"), podcast.getHosts());
+            string(field(json, "category"), podcast.getCategoryType().name());
+            string(field(json, "series"), podcast.getSeriesName());
+            field(json, "episode").append(podcast.getEpisodeNumber());
+        } else if (media instanceof ShortClip) {
+            string(field(json, "artist"), ((ShortClip) media).getArtistName());
+        }
+        return json.append('}');
+    }
+
+    static String error(String message) {
+        StringBuilder json = new StringBuilder("{");
+        return string(field(json, "error"), message).append('}').toString();
+    }
+}
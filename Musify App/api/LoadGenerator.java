@@ -0,0 +1,147 @@
+package api;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import util.Constants;
+import util.LatencyHistogram;
+import util.TableRenderer;
+
+/**
+ * Closed-loop load generator for a running MusifyServer: each client sends
+ * a mix of list, playlist, search, caption and add/remove requests for one
+ * user as fast as responses come back, and the latencies are reported per
+ * request kind.
+ *
+ * Usage: java api.LoadGenerator [base url] [user] [clients] [seconds] [caption file]
+ */
+public class LoadGenerator {
+    private static final TableRenderer HEADER = new TableRenderer(Constants.SCRIPT_SUMMARY_HEADER);
+    private static final TableRenderer ROW = new TableRenderer(Constants.SCRIPT_SUMMARY_FORMATTER);
+    private static final String[] KINDS = {"list", "playlist", "search", "caption", "add", "remove"};
+    private static final String[] WORDS = {"believer", "love", "home", "rock", "dance", "health", "heaven"};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:" + Constants.DEFAULT_HTTP_PORT;
+        String user = args.length > 1 ? args[1] : "judy";
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+        String captionFile = args.length > 4 ? args[4] : "believer";
+
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(2)).build();
+        String usersUrl = baseUrl + "/users/" + encode(user);
+        String playlistsBody = client.send(HttpRequest.newBuilder(URI.create(usersUrl + "/playlists")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        List<String> playlists = names(playlistsBody);
+        if (playlists.isEmpty()) {
+            System.err.println("User " + user + " has no playlists to load test.");
+            return;
+        }
+        // a playlist of its own for the add and remove requests
+        String scratch = "load " + System.nanoTime();
+        client.send(HttpRequest.newBuilder(URI.create(usersUrl + "/playlists?name=" + encode(scratch) + "&type=SONG&file=load_test"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+
+        LatencyHistogram[] latencies = new LatencyHistogram[KINDS.length];
+        for (int i = 0; i < KINDS.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        LongAdder errors = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        for (int c = 0; c < clients; c++) {
+            int clientNumber = c;
+            pool.submit(() -> {
+                Random random = new Random(clientNumber);
+                while (running.get()) {
+                    int kind = random.nextInt(KINDS.length);
+                    HttpRequest request;
+                    switch (KINDS[kind]) {
+                        case "list":
+                            request = HttpRequest.newBuilder(URI.create(usersUrl + "/playlists")).build();
+                            break;
+                        case "playlist":
+                            request = HttpRequest.newBuilder(URI.create(usersUrl + "/playlists/" + encode(playlists.get(random.nextInt(playlists.size()))))).build();
+                            break;
+                        case "search":
+                            request = HttpRequest.newBuilder(URI.create(usersUrl + "/search?q=" + WORDS[random.nextInt(WORDS.length)])).build();
+                            break;
+                        case "caption":
+                            request = HttpRequest.newBuilder(URI.create(baseUrl + "/captions/" + encode(captionFile))).build();
+                            break;
+                        case "add":
+                            request = HttpRequest.newBuilder(URI.create(usersUrl + "/playlists/" + encode(scratch) + "/media"))
+                                    .POST(HttpRequest.BodyPublishers.ofString("Load " + clientNumber + ",load test,Generator,POP,3," + captionFile)).build();
+                            break;
+                        default:
+                            request = HttpRequest.newBuilder(URI.create(usersUrl + "/playlists/" + encode(scratch) + "/media/" + encode("Load " + clientNumber)))
+                                    .DELETE().build();
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        // a full scratch playlist or an already removed item is expected under load
+                        if (response.statusCode() >= 500) {
+                            errors.increment();
+                        }
+                    } catch (Exception e) {
+                        errors.increment();
+                    }
+                    latencies[kind].record(System.nanoTime() - start);
+                }
+            });
+        }
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        pool.shutdown();
+        while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+            // waiting for requests in flight
+        }
+        client.send(HttpRequest.newBuilder(URI.create(usersUrl + "/playlists/" + encode(scratch))).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+
+        StringBuilder out = new StringBuilder();
+        HEADER.appendRow(out, "Request", "Count", "Total ms", "Mean us", "p50 us", "p99 us", "Max us", "Req/s");
+        out.append("--------------------------------------------------------------------------------------------").append(System.lineSeparator());
+        long total = 0;
+        for (int i = 0; i < KINDS.length; i++) {
+            LatencyHistogram histogram = latencies[i];
+            total += histogram.getCount();
+            ROW.appendRow(out, KINDS[i], histogram.getCount(), histogram.getTotalNanos() / 1000000, histogram.getMeanNanos() / 1000,
+                    histogram.getPercentileNanos(50) / 1000, histogram.getPercentileNanos(99) / 1000,
+                    histogram.getMaxNanos() / 1000, (long) (histogram.getCount() / seconds));
+        }
+        out.append(clients).append(" clients sent ").append(total).append(" requests in ").append(seconds).append(" s (")
+            .append((long) (total / seconds)).append(" req/s), ").append(errors.sum()).append(" errors.");
+        System.out.println(out);
+        System.exit(0);
+    }
+
+    // playlist names from the list response, which is all the parsing the generator needs
+    private static List<String> names(String json) {
+        ArrayList<String> names = new ArrayList<>();
+        int at = 0;
+        while ((at = json.indexOf("\"name\":\"", at)) >= 0) {
+            int start = at + 8;
+            int end = json.indexOf('"', start);
+            names.add(json.substring(start, end).replace("\\\"", "\""));
+            at = end;
+        }
+        return names;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
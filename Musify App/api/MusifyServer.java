@@ -0,0 +1,305 @@
+package api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import entities.Caption;
+import entities.Media;
+import entities.PlaylistSnapshot;
+import exceptions.InvalidFormatException;
+import exceptions.InvalidLineException;
+import exceptions.PlaylistFullException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import service.MusifyService;
+import util.CaptionStreamer;
+import util.Constants;
+import util.MediaParser;
+import util.SearchIndex;
+
+/**
+ * Local HTTP API over a MusifyService, using the JDK's built-in server.
+ *
+ *   GET    /users/{user}/playlists
+ *   POST   /users/{user}/playlists?name=&type=&file=
+ *   GET    /users/{user}/playlists/{playlist}
+ *   DELETE /users/{user}/playlists/{playlist}
+ *   POST   /users/{user}/playlists/{playlist}/media      body: one playlist file row
+ *   DELETE /users/{user}/playlists/{playlist}/media/{title}
+ *   GET    /users/{user}/search?q=words[&limit=n]
+ *   GET    /captions/{caption file}                      streamed as text
+ *
+ * New media go through MediaParser, so they are validated exactly as when
+ * loading, and its messages come back as {"error": ...}.
+ *
+ * Usage: java api.MusifyServer [port] [user index file]...
+ * Index files are read from data/, as MusifyApp does.
+ */
+public class MusifyServer {
+    private final MusifyService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // A request the API cannot serve, with the status to answer it with.
+    private static class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    public MusifyServer(MusifyService service, int port, int threads) throws IOException {
+        this.service = service;
+        // without TCP_NODELAY each small response waits out a delayed ACK (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/users/", this::handle);
+        server.createContext("/captions/", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Constants.DEFAULT_HTTP_PORT;
+        MusifyService service = new MusifyService();
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            int skipped = service.load(args[i], new File(Constants.DATA_DIR + args[i + 1]), new File(Constants.PLAYLIST_DIR));
+            System.out.println("Loaded " + args[i] + " from " + args[i + 1] + ", skipped " + skipped + " lines.");
+        }
+        int threads = Integer.getInteger(Constants.HTTP_THREADS_PROPERTY, 2 * Runtime.getRuntime().availableProcessors());
+        MusifyServer server = new MusifyServer(service, port, threads);
+        server.start();
+        System.out.println("Musify API listening on http://localhost:" + server.getPort() + "/");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().substring(1).split("/");
+            String method = exchange.getRequestMethod();
+            if (path[0].equals("captions") && path.length == 2 && method.equals("GET")) {
+                streamCaption(exchange, path[1]);
+                return;
+            }
+            if (path.length < 3) {
+                throw new ApiException(404, "No such resource.");
+            }
+            String user = path[1];
+            // the segment count, plus the literal after the playlist name when there is one
+            String route = method + " " + path[2] + "/" + (path.length - 3) + (path.length > 4 ? "/" + path[4] : "");
+            switch (route) {
+                case "GET playlists/0":
+                    send(exchange, 200, listPlaylists(user));
+                    break;
+                case "POST playlists/0":
+                    HashMap<String, String> query = query(exchange);
+                    send(exchange, 201, createPlaylist(user, query.get("name"), query.get("type"), query.get("file")));
+                    break;
+                case "GET playlists/1":
+                    send(exchange, 200, playlist(found(service.getPlaylist(user, path[3]), path[3])));
+                    break;
+                case "DELETE playlists/1":
+                    if (!service.removePlaylist(user, path[3])) {
+                        throw new ApiException(404, "No such playlist found with name: " + path[3]);
+                    }
+                    send(exchange, 200, "{\"removed\":true}");
+                    break;
+                case "POST playlists/2/media":
+                    send(exchange, 201, addMedia(user, path[3], body(exchange)));
+                    break;
+                case "DELETE playlists/3/media":
+                    if (service.removeMedia(user, path[3], path[5]) == null) {
+                        throw new ApiException(404, "No such media found with title: " + path[5]);
+                    }
+                    send(exchange, 200, "{\"removed\":true}");
+                    break;
+                case "GET search/0":
+                    send(exchange, 200, search(user, query(exchange)));
+                    break;
+                default:
+                    throw new ApiException(404, "No such resource.");
+            }
+        } catch (ApiException e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String listPlaylists(String user) {
+        StringBuilder json = new StringBuilder("[");
+        for (PlaylistSnapshot view : service.getPlaylists(user)) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            summary(json, view).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private String playlist(PlaylistSnapshot view) {
+        StringBuilder json = summary(new StringBuilder(), view);
+        Json.field(json, "media").append('[');
+        List<Media> mediaList = view.getMediaList();
+        for (int i = 0; i < mediaList.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Json.media(json, mediaList.get(i));
+        }
+        return json.append("]}").toString();
+    }
+
+    // an unclosed object with the playlist's name, type and totals
+    private static StringBuilder summary(StringBuilder json, PlaylistSnapshot view) {
+        json.append('{');
+        Json.string(Json.field(json, "name"), view.getName());
+        Json.string(Json.field(json, "type"), view.getMediaType().toUpperCase());
+        Json.field(json, "size").append(view.size());
+        Json.field(json, "totalDuration").append(view.getTotalDuration());
+        return json;
+    }
+
+    private String createPlaylist(String user, String name, String type, String file) throws ApiException {
+        if (name == null || type == null || file == null) {
+            throw new ApiException(400, "Invalid Playlist data. Skipping this line.");
+        }
+        try {
+            if (!service.createPlaylist(user, name, type, file)) {
+                throw new ApiException(409, "Duplicate Playlist name. Skipping this line.");
+            }
+        } catch (InvalidFormatException e) {
+            throw new ApiException(400, e.getMessage());
+        }
+        return playlist(service.getPlaylist(user, name));
+    }
+
+    private String addMedia(String user, String playlistName, String row) throws ApiException {
+        PlaylistSnapshot view = found(service.getPlaylist(user, playlistName), playlistName);
+        try {
+            Media media = MediaParser.parse(row.trim(), view.getMediaType().toUpperCase());
+            if (!service.addMedia(user, playlistName, media)) {
+                throw new ApiException(404, "No such playlist found with name: " + playlistName);
+            }
+            StringBuilder json = new StringBuilder();
+            return Json.media(json, media).toString();
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "Duration in mins not in correct format. Skipping this line.");
+        } catch (InvalidLineException | InvalidFormatException e) {
+            throw new ApiException(400, e.getMessage());
+        } catch (PlaylistFullException e) {
+            throw new ApiException(409, e.getMessage());
+        }
+    }
+
+    private String search(String user, HashMap<String, String> query) throws ApiException {
+        String words = query.get("q");
+        if (words == null) {
+            throw new ApiException(400, "Missing q parameter.");
+        }
+        int limit = Constants.SEARCH_RESULT_LIMIT;
+        if (query.containsKey("limit")) {
+            try {
+                limit = Integer.parseInt(query.get("limit"));
+            } catch (NumberFormatException e) {
+                throw new ApiException(400, "limit must be a number.");
+            }
+        }
+        StringBuilder json = new StringBuilder("[");
+        for (SearchIndex.Hit hit : service.search(user, words, limit)) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('{');
+            Json.string(Json.field(json, "playlist"), hit.getPlaylist().getName());
+            Json.field(json, "score").append(hit.getScore());
+            Json.media(Json.field(json, "media"), hit.getMedia());
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    private void streamCaption(HttpExchange exchange, String fileName) throws IOException, ApiException {
+        Caption caption = new Caption(fileName);
+        if (fileName.startsWith(".") || !caption.exists()) {
+            throw new ApiException(404, "Invalid or missing caption file.");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        // length 0: chunked, so the file is never held in memory
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            CaptionStreamer.copy(caption.getFile(), out);
+        }
+    }
+
+    private static PlaylistSnapshot found(PlaylistSnapshot view, String playlistName) throws ApiException {
+        if (view == null) {
+            throw new ApiException(404, "No such playlist found with name: " + playlistName);
+        }
+        return view;
+    }
+
+    private static HashMap<String, String> query(HttpExchange exchange) {
+        HashMap<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            parameters.put(URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                    pair.length > 1 ? URLDecoder.decode(pair[1], StandardCharsets.UTF_8) : "");
+        }
+        return parameters;
+    }
+
+    private static String body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Once a response has started (a streamed caption) the error cannot be
+    // sent; closing the exchange cuts the response short instead.
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() == -1) {
+            send(exchange, status, Json.error(message));
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import util.Constants;
+
+/**
+ * Writes a synthetic catalog (index file, playlist files and caption files)
+ * in the formats MusifyApp loads, for scale and error-path testing. The same
+ * seed and options always produce the same files.
+ *
+ * Usage: java benchmark.CatalogGenerator <output dir> [option=value...]
+ *
+ * The catalog goes under <output dir>/data so MusifyApp can be run from
+ * <output dir> with the printed index file name.
+ */
+public class CatalogGenerator {
+    private static final String[] TYPES = {Constants.SONG, Constants.PODCAST, Constants.SHORTCLIP};
+    private static final String[] GENRES = {"POP", "ROCK", "JAZZ"};
+    private static final String[] CATEGORIES = {"HEALTH", "EDUCATION", "TECHNOLOGY"};
+    private static final String[] WORDS = {"love", "night", "believer", "home", "dance", "fire", "river", "heaven",
+            "radio", "summer", "tears", "light", "road", "dream", "rock", "heart"};
+
+    private final Random random;
+    private final int playlists;
+    private final int mediaPerPlaylist;
+    private final int captionFiles;
+    private final int captionLines;
+    private final double malformedRate;
+    private final double badValueRate;
+    private final double missingCaptionRate;
+    private final String indexName;
+
+    // what was written, so tests know what the loader should report
+    private long validRows;
+    private long malformedRows;
+    private long badValueRows;
+    private long missingCaptionRows;
+
+    private CatalogGenerator(Map<String, String> options) {
+        random = new Random(Long.parseLong(option(options, "seed", "42")));
+        playlists = Integer.parseInt(option(options, "playlists", "10"));
+        mediaPerPlaylist = Integer.parseInt(option(options, "media", "6"));
+        captionFiles = Integer.parseInt(option(options, "captionFiles", "100"));
+        captionLines = Integer.parseInt(option(options, "captionLines", "20"));
+        malformedRate = Double.parseDouble(option(options, "malformed", "0"));
+        badValueRate = Double.parseDouble(option(options, "badValues", "0"));
+        missingCaptionRate = Double.parseDouble(option(options, "missingCaptions", "0"));
+        indexName = option(options, "index", "playlists_generated.txt");
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options: " + options.keySet());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java benchmark.CatalogGenerator <output dir> [seed=42] [playlists=10] [media=6]"
+                    + " [captionFiles=100] [captionLines=20] [malformed=0] [badValues=0] [missingCaptions=0]"
+                    + " [index=playlists_generated.txt]");
+            return;
+        }
+        LinkedHashMap<String, String> options = new LinkedHashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String[] option = args[i].split("=", 2);
+            if (option.length != 2) {
+                throw new IllegalArgumentException("Expected option=value but got " + args[i]);
+            }
+            options.put(option[0], option[1]);
+        }
+        CatalogGenerator generator = new CatalogGenerator(options);
+        generator.write(new File(args[0]));
+        generator.printSummary();
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private void write(File root) throws IOException {
+        File playlistDir = new File(root, Constants.PLAYLIST_DIR);
+        File captionDir = new File(root, Constants.MEDIATEXT_DIR);
+        playlistDir.mkdirs();
+        captionDir.mkdirs();
+
+        for (int i = 0; i < captionFiles; i++) {
+            try (PrintWriter writer = writer(new File(captionDir, captionName(i)))) {
+                for (int line = 0; line < captionLines; line++) {
+                    writer.println(phrase(6));
+                }
+            }
+        }
+
+        try (PrintWriter index = writer(new File(root, Constants.DATA_DIR + indexName))) {
+            for (int i = 0; i < playlists; i++) {
+                String type = TYPES[i % TYPES.length];
+                String fileName = "generated_" + i;
+                index.println("Playlist " + i + "," + type + "," + fileName);
+                try (PrintWriter playlist = writer(new File(playlistDir, fileName))) {
+                    for (int j = 0; j < mediaPerPlaylist; j++) {
+                        playlist.println(row(type, i * mediaPerPlaylist + j));
+                    }
+                }
+            }
+        }
+    }
+
+    // One playlist row, broken in at most one way so each row counts once.
+    private String row(String type, long id) {
+        double roll = random.nextDouble();
+        boolean malformed = roll < malformedRate;
+        boolean badValue = !malformed && roll < malformedRate + badValueRate;
+        boolean missingCaption = !malformed && !badValue && roll < malformedRate + badValueRate + missingCaptionRate;
+
+        String title = "Track " + id + " " + phrase(2);
+        String description = phrase(4);
+        String names = "Artist " + random.nextInt(1000) + (random.nextInt(4) == 0 ? "#Artist " + random.nextInt(1000) : "");
+        int duration = 1 + random.nextInt(60);
+        String caption = missingCaption ? "missing_" + id : captionName(random.nextInt(Math.max(1, captionFiles)));
+        if (captionFiles == 0 && !missingCaption) {
+            caption = "missing_" + id;
+            missingCaption = true;
+        }
+
+        String row;
+        switch (type) {
+            case Constants.SONG:
+                String genre = badValue ? "DISCO" : GENRES[random.nextInt(GENRES.length)];
+                row = title + "," + description + "," + names + "," + genre + "," + duration + "," + caption;
+                break;
+            case Constants.PODCAST:
+                String category = badValue ? "SPORTS" : CATEGORIES[random.nextInt(CATEGORIES.length)];
+                row = title + "," + description + "," + names + "," + category + ",Series " + random.nextInt(100)
+                        + "," + (1 + random.nextInt(500)) + "," + duration + "," + caption;
+                break;
+            default:
+                // short clips have no genre, so their bad value is the duration
+                row = title + "," + description + "," + names + "," + (badValue ? -duration : duration) + "," + caption;
+                break;
+        }
+        if (malformed) {
+            // half lose their last fields, half get a duration that is not a number
+            row = random.nextBoolean() ? row.substring(0, row.indexOf(',', row.indexOf(',') + 1)) : row.replace("," + duration + ",", "," + duration + ".5,");
+            malformedRows++;
+        } else if (badValue) {
+            badValueRows++;
+        } else if (missingCaption) {
+            missingCaptionRows++;
+        } else {
+            validRows++;
+        }
+        return row;
+    }
+
+    private String phrase(int words) {
+        StringBuilder phrase = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                phrase.append(' ');
+            }
+            phrase.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return phrase.toString();
+    }
+
+    private static String captionName(int i) {
+        return "generated_caption_" + i;
+    }
+
+    private static PrintWriter writer(File file) throws IOException {
+        return new PrintWriter(new BufferedWriter(new FileWriter(file)));
+    }
+
+    private void printSummary() {
+        long rows = validRows + malformedRows + badValueRows + missingCaptionRows;
+        System.out.println("Wrote " + playlists + " playlists, " + rows + " media rows and " + captionFiles + " caption files.");
+        System.out.println("Valid rows: " + validRows);
+        System.out.println("Malformed rows: " + malformedRows);
+        System.out.println("Bad genre, category or duration: " + badValueRows);
+        System.out.println("Missing caption files: " + missingCaptionRows);
+        System.out.println("Index file: " + Constants.DATA_DIR + indexName);
+        if (mediaPerPlaylist > Constants.DEFAULT_PLAYLIST_CAPACITY) {
+            System.out.println("Load with -D" + Constants.PLAYLIST_CAPACITY_PROPERTY + "=" + mediaPerPlaylist + " to fit every row.");
+        }
+    }
+}
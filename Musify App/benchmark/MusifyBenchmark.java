@@ -0,0 +1,251 @@
+package benchmark;
+
+import entities.Media;
+import entities.Playlist;
+import entities.PlaylistCatalog;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+import util.Constants;
+import util.CsvLine;
+import util.LineReader;
+import util.MediaParser;
+import util.MediaRegistry;
+import util.SearchIndex;
+import util.TableRenderer;
+
+/**
+ * Times the load, caption read, lookup, search, removal and save paths over
+ * generated catalogs of a given number of rows, reporting time and heap
+ * allocated per operation.
+ *
+ * Usage: java benchmark.MusifyBenchmark [rows...]   (default 10 10000 1000000)
+ * Iterations are set with -Dmusify.bench.warmup and -Dmusify.bench.iterations.
+ *
+ * This is a plain main that compiles and runs with the rest of the
+ * sources, for a quick look without a build. Its own warmup runs stand in
+ * for JMH's, so compare runs on the same JVM and machine only; the JMH
+ * versions of these operations are MusifyBenchmarks in jmh/.
+ */
+public class MusifyBenchmark {
+    private static final int[] DEFAULT_ROWS = {10, 10000, 1000000};
+    private static final String[] GENRES = {"POP", "ROCK", "JAZZ"};
+    // removals and lookups per iteration, so large catalogs stay quick to run
+    private static final int MAX_OPERATIONS = 100000;
+
+    private static final TableRenderer HEADER = new TableRenderer(Constants.BENCH_HEADER);
+    private static final TableRenderer ROW = new TableRenderer(Constants.BENCH_FORMATTER);
+
+    private final int rows;
+    private final int warmup = Integer.getInteger(Constants.BENCH_WARMUP_PROPERTY, Constants.DEFAULT_BENCH_WARMUP);
+    private final int iterations = Integer.getInteger(Constants.BENCH_ITERATIONS_PROPERTY, Constants.DEFAULT_BENCH_ITERATIONS);
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final Random random = new Random(42);
+    private final File playlistFile;
+    private final File captionFile;
+    private final File saveFile;
+    private final StringBuilder out = new StringBuilder();
+    private final ArrayList<Media> removed = new ArrayList<>();
+
+    // One measured operation; returns how many items it processed.
+    private interface Operation {
+        int run() throws Exception;
+    }
+
+    private MusifyBenchmark(int rows, File dir) {
+        this.rows = rows;
+        this.playlistFile = new File(dir, "bench_" + rows);
+        this.captionFile = new File(dir, "bench_caption_" + rows);
+        this.saveFile = new File(dir, "bench_save_" + rows);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = DEFAULT_ROWS;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+        File dir = new File(System.getProperty("java.io.tmpdir"), "musify-bench");
+        dir.mkdirs();
+
+        StringBuilder header = new StringBuilder();
+        HEADER.appendRow(header, "Benchmark", "Rows", "ns/op", "best ns/op", "ops/s", "bytes/op");
+        header.append("-------------------------------------------------------------------------------------");
+        System.out.println(header);
+        for (int rows : sizes) {
+            MusifyBenchmark benchmark = new MusifyBenchmark(rows, dir);
+            generate(rows, benchmark.playlistFile, benchmark.captionFile);
+            benchmark.runAll();
+            benchmark.cleanUp();
+        }
+    }
+
+    private void runAll() throws Exception {
+        Playlist playlist = load();
+        measure("parse", () -> load().size());
+        measure("captionRead", this::readCaption);
+
+        PlaylistCatalog catalog = new PlaylistCatalog();
+        int playlistCount = Math.min(rows, MAX_OPERATIONS);
+        for (int i = 0; i < playlistCount; i++) {
+            catalog.add(new Playlist("Playlist " + i, Constants.SONG, "playlist_" + i));
+        }
+        String[] names = new String[playlistCount];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "PLAYLIST " + random.nextInt(playlistCount);
+        }
+        measure("lookup", () -> {
+            int found = 0;
+            for (String name : names) {
+                found += catalog.find(name) != null ? 1 : 0;
+            }
+            if (found != names.length) {
+                throw new IllegalStateException("lookup missed " + (names.length - found) + " playlists");
+            }
+            return names.length;
+        });
+
+        SearchIndex searchIndex = new SearchIndex();
+        for (Media media : playlist.getMediaList()) {
+            searchIndex.mediaAdded(playlist, media);
+        }
+        // a track number is in a handful of rows, like a real title search
+        String[] queries = new String[Math.min(rows, 1000)];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = String.valueOf(random.nextInt(rows));
+        }
+        measure("search", () -> {
+            for (String query : queries) {
+                searchIndex.search(query, Constants.SEARCH_RESULT_LIMIT);
+            }
+            return queries.length;
+        });
+
+        measure("remove", () -> restore(playlist), () -> removeSome(playlist));
+        measure("save", () -> save(playlist));
+        System.out.print(out);
+        out.setLength(0);
+    }
+
+    private void measure(String name, Operation operation) throws Exception {
+        measure(name, null, operation);
+    }
+
+    // setUp, if given, runs untimed before every iteration
+    private void measure(String name, Operation setUp, Operation operation) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            if (setUp != null) {
+                setUp.run();
+            }
+            operation.run();
+        }
+        long operations = 0;
+        long nanos = 0;
+        long bytes = 0;
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            if (setUp != null) {
+                setUp.run();
+            }
+            long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            int count = operation.run();
+            long elapsed = System.nanoTime() - start;
+            bytes += threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            nanos += elapsed;
+            operations += count;
+            best = Math.min(best, (double) elapsed / Math.max(1, count));
+        }
+        operations = Math.max(1, operations);
+        ROW.appendRow(out, name, rows, nanos / operations, (long) best,
+                operations * 1000000000L / Math.max(1, nanos), bytes / operations);
+    }
+
+    // a fresh registry per load, as MusifyApp uses, so dedupe hits from earlier runs do not count
+    private Playlist load() throws Exception {
+        Playlist playlist = new Playlist("Bench " + rows, Constants.SONG, playlistFile.getName(), rows);
+        MediaRegistry registry = new MediaRegistry();
+        try (LineReader reader = new LineReader(playlistFile)) {
+            CsvLine parts = new CsvLine();
+            while (reader.readLine(parts)) {
+                Media media = MediaParser.parse(parts, Constants.SONG, registry);
+                playlist.addMedia(media);
+                registry.register(media);
+            }
+        }
+        return playlist;
+    }
+
+    // the uncached path of CaptionCache: read every line of a caption file
+    private int readCaption() throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        try (LineReader reader = new LineReader(captionFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines.size();
+    }
+
+    private int restore(Playlist playlist) throws Exception {
+        for (Media media : removed) {
+            playlist.addMedia(media);
+        }
+        int count = removed.size();
+        removed.clear();
+        return count;
+    }
+
+    // removes a random sample by title; restore puts it back before the next run
+    private int removeSome(Playlist playlist) throws Exception {
+        int count = Math.min(rows, MAX_OPERATIONS);
+        for (int i = 0; i < count; i++) {
+            Media media = playlist.removeMedia("title " + random.nextInt(rows));
+            if (media != null) {
+                removed.add(media);
+            }
+        }
+        return count;
+    }
+
+    // the same writes as MusifyApp.savePlaylistFile
+    private int save(Playlist playlist) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileOutputStream(saveFile))) {
+            for (Media media : playlist.getMediaList()) {
+                writer.println(media.toString());
+            }
+            if (writer.checkError()) {
+                throw new IOException("Could not write " + saveFile);
+            }
+        }
+        return playlist.size();
+    }
+
+    // Writes a playlist file of rows songs and a caption file of rows lines.
+    public static void generate(int rows, File playlistFile, File captionFile) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileOutputStream(playlistFile))) {
+            for (int i = 0; i < rows; i++) {
+                writer.println("Title " + i + ",Description of track " + i + ",Artist " + i + "#Guest " + (i % 97)
+                        + "," + GENRES[i % GENRES.length] + "," + (1 + i % 9) + ",caption_" + (i % 100));
+            }
+        }
+        try (PrintWriter writer = new PrintWriter(new FileOutputStream(captionFile))) {
+            for (int i = 0; i < rows; i++) {
+                writer.println("Caption line " + i + ", you made me a believer, believer");
+            }
+        }
+    }
+
+    private void cleanUp() {
+        playlistFile.delete();
+        captionFile.delete();
+        saveFile.delete();
+    }
+}
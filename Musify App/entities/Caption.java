@@ -0,0 +1,35 @@
+package entities;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import util.CaptionCache;
+import util.Constants;
+
+/**
+ * Lazy handle on a media caption file. Nothing is read until the lines are
+ * first asked for, and reads go through the shared caption cache.
+ */
+public class Caption {
+    private String fileName;
+
+    public Caption(String fileName) {
+        this.fileName = fileName;
+    }
+
+    // GETTERS
+    public String getFileName() {return fileName;}
+    public File getFile() {return new File(Constants.MEDIATEXT_DIR + fileName);}
+
+    public boolean exists() {
+        return getFile().isFile();
+    }
+
+    public boolean isLoaded() {
+        return CaptionCache.shared().contains(fileName);
+    }
+
+    public List<String> getLines() throws IOException {
+        return CaptionCache.shared().get(fileName);
+    }
+}
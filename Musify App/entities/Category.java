@@ -0,0 +1,12 @@
+package entities;
+
+/**
+ * Podcast categories.
+ */
+public enum Category {
+    HEALTH, EDUCATION, TECHNOLOGY;
+
+    public static Category parse(String value) {
+        return Enums.parse(Category.class, value);
+    }
+}
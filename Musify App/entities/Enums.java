@@ -0,0 +1,20 @@
+package entities;
+
+/**
+ * Lookups shared by the facet enums.
+ */
+class Enums {
+
+    private Enums() {
+    }
+
+    // Case-insensitive lookup that returns null instead of throwing.
+    static <E extends Enum<E>> E parse(Class<E> type, String value) {
+        for (E candidate : type.getEnumConstants()) {
+            if (candidate.name().equalsIgnoreCase(value)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,12 @@
+package entities;
+
+/**
+ * Song genres.
+ */
+public enum Genre {
+    POP, ROCK, JAZZ;
+
+    public static Genre parse(String value) {
+        return Enums.parse(Genre.class, value);
+    }
+}
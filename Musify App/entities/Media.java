@@ -7,15 +7,17 @@ public abstract class Media {
     protected String description;
     protected int duration;
     protected String captionFileName;
+    protected Caption caption;
 
     public Media(String name, String description, int duration, String captionFileName) throws InvalidFormatException {
         if (duration <= 0) {
-            throw new InvalidFormatException("Duration in mins not in correct format. Skipping this line.");
+            throw new RowFormatException("Duration in mins not in correct format. Skipping this line.");
         }
         this.name = name;
         this.description = description;
         this.duration = duration;
         this.captionFileName = captionFileName;
+        this.caption = new Caption(captionFileName);
     }
 
     // GETTERS
@@ -23,6 +25,8 @@ public abstract class Media {
     public String getDescription() {return description;}
     public int getDuration() {return duration;}
     public String getCaptionFileName() {return captionFileName;}
+    public Caption getCaption() {return caption;}
+    public abstract MediaType getType();
 
     @Override
     public abstract String toString();
@@ -0,0 +1,196 @@
+package entities;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+
+/**
+ * Media in playback order with O(log n) access and removal by position and
+ * O(1) lookup by title (ignoring case).
+ *
+ * Items are appended to slots and removal leaves a hole. A Fenwick tree over
+ * the slots counts the live items, so the n-th item is found without
+ * shifting anything. The slots are compacted once more than half are holes.
+ */
+public class MediaList implements Iterable<Media> {
+    private static final int MIN_SLOTS = 8;
+
+    private Media[] slots = new Media[MIN_SLOTS];
+    // Fenwick tree of live items per slot, 1-based
+    private int[] tree = new int[MIN_SLOTS + 1];
+    private int used;
+    private int size;
+    // live slots for each case-folded title, in playback order
+    private HashMap<String, ArrayDeque<Integer>> titles = new HashMap<>();
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(Media media) {
+        if (used == slots.length) {
+            if (size < used / 2) {
+                compact();
+            } else {
+                grow();
+            }
+        }
+        int slot = used++;
+        slots[slot] = media;
+        update(slot, 1);
+        titles.computeIfAbsent(key(media.getName()), k -> new ArrayDeque<>()).addLast(slot);
+        size++;
+    }
+
+    public Media get(int index) {
+        return slots[slotOf(index)];
+    }
+
+    public Media find(String title) {
+        ArrayDeque<Integer> found = titles.get(key(title));
+        return found == null ? null : slots[found.peekFirst()];
+    }
+
+    public Media removeAt(int index) {
+        return removeSlot(slotOf(index));
+    }
+
+    // Removes the first item with this title, ignoring case.
+    public Media remove(String title) {
+        ArrayDeque<Integer> found = titles.get(key(title));
+        return found == null ? null : removeSlot(found.peekFirst());
+    }
+
+    // Removes this exact item.
+    public boolean remove(Media media) {
+        ArrayDeque<Integer> found = titles.get(key(media.getName()));
+        if (found == null) {
+            return false;
+        }
+        for (int slot : found) {
+            if (slots[slot] == media) {
+                removeSlot(slot);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<Media> iterator() {
+        return new Iterator<Media>() {
+            private int next = advance(0);
+
+            private int advance(int slot) {
+                while (slot < used && slots[slot] == null) {
+                    slot++;
+                }
+                return slot;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            public Media next() {
+                if (next >= used) {
+                    throw new NoSuchElementException();
+                }
+                Media media = slots[next];
+                next = advance(next + 1);
+                return media;
+            }
+        };
+    }
+
+    private Media removeSlot(int slot) {
+        Media media = slots[slot];
+        slots[slot] = null;
+        update(slot, -1);
+        String key = key(media.getName());
+        ArrayDeque<Integer> found = titles.get(key);
+        found.remove(slot);
+        if (found.isEmpty()) {
+            titles.remove(key);
+        }
+        size--;
+        if (used > MIN_SLOTS && size < used / 4) {
+            compact();
+        }
+        return media;
+    }
+
+    // Walks down the Fenwick tree to the slot holding the index-th live item.
+    private int slotOf(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        int position = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(slots.length); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next <= slots.length && tree[next] < remaining) {
+                position = next;
+                remaining -= tree[next];
+            }
+        }
+        return position;
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void grow() {
+        slots = Arrays.copyOf(slots, slots.length * 2);
+        rebuild();
+    }
+
+    private void compact() {
+        int live = 0;
+        for (int slot = 0; slot < used; slot++) {
+            if (slots[slot] != null) {
+                slots[live++] = slots[slot];
+            }
+        }
+        Arrays.fill(slots, live, used, null);
+        used = live;
+        if (slots.length > MIN_SLOTS && used < slots.length / 4) {
+            slots = Arrays.copyOf(slots, Math.max(MIN_SLOTS, slots.length / 2));
+        }
+        rebuild();
+    }
+
+    private void rebuild() {
+        tree = new int[slots.length + 1];
+        titles = new HashMap<>();
+        for (int slot = 0; slot < used; slot++) {
+            if (slots[slot] != null) {
+                tree[slot + 1]++;
+                titles.computeIfAbsent(key(slots[slot].getName()), k -> new ArrayDeque<>()).addLast(slot);
+            }
+        }
+        // turn the per-slot counts into Fenwick partial sums in one pass
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    private static String key(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,12 @@
+package entities;
+
+/**
+ * The kinds of media a playlist can hold.
+ */
+public enum MediaType {
+    SONG, PODCAST, SHORTCLIP;
+
+    public static MediaType parse(String value) {
+        return Enums.parse(MediaType.class, value);
+    }
+}
@@ -2,36 +2,145 @@ package entities;
 
 import exceptions.InvalidFormatException;
 import exceptions.PlaylistFullException;
-import java.util.ArrayList;
+import java.util.List;
+import util.Constants;
 
 public class Playlist {
     private String name;
     private String mediaType;
+    private MediaType type;
     private String fileName;
-    private ArrayList<Media> mediaList = new ArrayList<>();
+    private int capacity;
+    private MediaList mediaList = new MediaList();
+    // sum of getDuration() over the media list, kept as media come and go
+    private long totalDuration;
+    // true while the playlist file on disk is behind the media list
+    private volatile boolean dirty = true;
+    // bumped by every change; the cached snapshot is reused while it matches
+    private volatile long version;
+    private volatile PlaylistSnapshot snapshot;
+    // set by the catalog holding this playlist
+    private PlaylistListener listener;
 
     public Playlist(String name, String mediaType, String fileName) throws InvalidFormatException {
-        String upperMediaType = mediaType.toUpperCase();
-        if (!upperMediaType.equals("SONG") && !upperMediaType.equals("PODCAST") && !upperMediaType.equals("SHORTCLIP")) {
-            throw new InvalidFormatException("Incorrect Media Type. Skipping this line.");
+        this(name, mediaType, fileName, Integer.getInteger(Constants.PLAYLIST_CAPACITY_PROPERTY, Constants.DEFAULT_PLAYLIST_CAPACITY));
+    }
+
+    public Playlist(String name, String mediaType, String fileName, int capacity) throws InvalidFormatException {
+        if (capacity <= 0) {
+            throw new InvalidFormatException("Playlist capacity must be positive.");
         }
+        MediaType type = MediaType.parse(mediaType);
+        if (type == null) {
+            throw new RowFormatException("Incorrect Media Type. Skipping this line.");
+        }
+        this.type = type;
         this.name = name;
         this.mediaType = mediaType;
         this.fileName = fileName;
+        this.capacity = capacity;
     }
 
     // GETTERS
     public String getName() {return name;}
     public String getMediaType() {return mediaType;}
+    public MediaType getType() {return type;}
     public String getFileName() {return fileName;}
-    public ArrayList<Media> getMediaList() {return mediaList;}
+    public int getCapacity() {return capacity;}
+    public synchronized int size() {return mediaList.size();}
+    public synchronized boolean isEmpty() {return mediaList.isEmpty();}
+    public synchronized Media getMedia(int index) {return mediaList.get(index);}
+    public synchronized Media findMedia(String title) {return mediaList.find(title);}
+    public boolean isDirty() {return dirty;}
+    public long getVersion() {return version;}
+    public synchronized long getTotalDuration() {return totalDuration;}
+
+    public void markClean() {
+        dirty = false;
+    }
+
+    // Marks the playlist saved, unless it changed after the snapshot that was written.
+    public synchronized void markClean(PlaylistSnapshot saved) {
+        if (saved.getVersion() == version) {
+            dirty = false;
+        }
+    }
+
+    void setListener(PlaylistListener listener) {
+        this.listener = listener;
+    }
+
+
+    /**
+     * The media as of now, immutable. Copied once per version, so repeated
+     * calls between changes return the same snapshot.
+     */
+    public PlaylistSnapshot snapshot() {
+        PlaylistSnapshot current = snapshot;
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null || snapshot.getVersion() != version) {
+                Media[] media = new Media[mediaList.size()];
+                int i = 0;
+                for (Media item : mediaList) {
+                    media[i++] = item;
+                }
+                snapshot = new PlaylistSnapshot(this, version, media, totalDuration);
+            }
+            return snapshot;
+        }
+    }
 
+    // Read-only list in playback order, from the current snapshot.
+    public List<Media> getMediaList() {
+        return snapshot().getMediaList();
+    }
 
-    public void addMedia(Media media) throws PlaylistFullException {
-        if (mediaList.size() > 5) {
+    public synchronized void addMedia(Media media) throws PlaylistFullException {
+        if (mediaList.size() >= capacity) {
             throw new PlaylistFullException("Playlist " + name + " is full. You cannot add new " + mediaType + " to this playlist.");
         }
         mediaList.add(media);
+        totalDuration += media.getDuration();
+        version++;
+        dirty = true;
+        if (listener != null) {
+            listener.mediaAdded(this, media);
+        }
+    }
+
+    public synchronized boolean removeMedia(Media media) {
+        if (!mediaList.remove(media)) {
+            return false;
+        }
+        removed(media);
+        return true;
+    }
+
+    // Removes the first media with this title, ignoring case, or returns null.
+    public synchronized Media removeMedia(String title) {
+        Media removed = mediaList.remove(title);
+        if (removed != null) {
+            removed(removed);
+        }
+        return removed;
+    }
+
+    public synchronized Media removeMediaAt(int index) {
+        Media removed = mediaList.removeAt(index);
+        removed(removed);
+        return removed;
+    }
+
+    private void removed(Media media) {
+        totalDuration -= media.getDuration();
+        version++;
+        dirty = true;
+        if (listener != null) {
+            listener.mediaRemoved(this, media);
+        }
     }
 
     @Override
@@ -0,0 +1,84 @@
+package entities;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The user's playlists in creation order, indexed by case-folded name so
+ * lookups, uniqueness checks and removals do not scan the whole list.
+ * Listeners hear about every media added to or removed from its playlists.
+ */
+public class PlaylistCatalog implements Iterable<Playlist> {
+    private LinkedHashMap<String, Playlist> playlists = new LinkedHashMap<>();
+    private List<PlaylistListener> listeners = new CopyOnWriteArrayList<>();
+    private PlaylistListener dispatcher = new PlaylistListener() {
+        public void mediaAdded(Playlist playlist, Media media) {
+            for (PlaylistListener listener : listeners) {
+                listener.mediaAdded(playlist, media);
+            }
+        }
+
+        public void mediaRemoved(Playlist playlist, Media media) {
+            for (PlaylistListener listener : listeners) {
+                listener.mediaRemoved(playlist, media);
+            }
+        }
+    };
+
+    // GETTERS
+    public Collection<Playlist> getPlaylists() {return Collections.unmodifiableCollection(playlists.values());}
+    public int size() {return playlists.size();}
+    public boolean isEmpty() {return playlists.isEmpty();}
+
+    /**
+     * Adds the playlist unless one with the same name, ignoring case,
+     * is already in the catalog.
+     */
+    public boolean add(Playlist playlist) {
+        if (playlists.putIfAbsent(key(playlist.getName()), playlist) != null) {
+            return false;
+        }
+        playlist.setListener(dispatcher);
+        for (Media media : playlist.getMediaList()) {
+            dispatcher.mediaAdded(playlist, media);
+        }
+        return true;
+    }
+
+    public void addListener(PlaylistListener listener) {
+        listeners.add(listener);
+    }
+
+    public boolean contains(String name) {
+        return playlists.containsKey(key(name));
+    }
+
+    public Playlist find(String name) {
+        return playlists.get(key(name));
+    }
+
+    public Playlist remove(String name) {
+        Playlist removed = playlists.remove(key(name));
+        if (removed != null) {
+            removed.setListener(null);
+            for (Media media : removed.getMediaList()) {
+                dispatcher.mediaRemoved(removed, media);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Iterator<Playlist> iterator() {
+        return getPlaylists().iterator();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,29 @@
+package entities;
+
+/**
+ * A media item in the playlist it belongs to, compared by identity, as
+ * returned by the catalog indexes.
+ */
+public class PlaylistEntry {
+    private final Playlist playlist;
+    private final Media media;
+
+    public PlaylistEntry(Playlist playlist, Media media) {
+        this.playlist = playlist;
+        this.media = media;
+    }
+
+    // GETTERS
+    public Playlist getPlaylist() {return playlist;}
+    public Media getMedia() {return media;}
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PlaylistEntry && ((PlaylistEntry) other).playlist == playlist && ((PlaylistEntry) other).media == media;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(playlist) + System.identityHashCode(media);
+    }
+}
@@ -0,0 +1,11 @@
+package entities;
+
+/**
+ * Told about every media added to or removed from a playlist held in a
+ * PlaylistCatalog, so indexes over the catalog can stay up to date.
+ * The loader may call it from several threads at once.
+ */
+public interface PlaylistListener {
+    void mediaAdded(Playlist playlist, Media media);
+    void mediaRemoved(Playlist playlist, Media media);
+}
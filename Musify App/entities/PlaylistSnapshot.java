@@ -0,0 +1,48 @@
+package entities;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of a playlist's media at one version. Taking one is cheap
+ * when nothing changed since the last, since Playlist caches it per version,
+ * and it can be read, played or saved for as long as needed without a lock.
+ */
+public class PlaylistSnapshot {
+    private final String name;
+    private final String mediaType;
+    private final String fileName;
+    private final long version;
+    private final List<Media> mediaList;
+    private final long totalDuration;
+
+    PlaylistSnapshot(Playlist playlist, long version, Media[] media, long totalDuration) {
+        this.name = playlist.getName();
+        this.mediaType = playlist.getMediaType();
+        this.fileName = playlist.getFileName();
+        this.version = version;
+        this.mediaList = Collections.unmodifiableList(Arrays.asList(media));
+        this.totalDuration = totalDuration;
+    }
+
+    // GETTERS
+    public String getName() {return name;}
+    public String getMediaType() {return mediaType;}
+    public String getFileName() {return fileName;}
+    public long getVersion() {return version;}
+    public List<Media> getMediaList() {return mediaList;}
+    public long getTotalDuration() {return totalDuration;}
+    public int size() {return mediaList.size();}
+    public boolean isEmpty() {return mediaList.isEmpty();}
+
+    // First media with this title, ignoring case, or null.
+    public Media findMedia(String title) {
+        for (Media media : mediaList) {
+            if (media.getName().equalsIgnoreCase(title)) {
+                return media;
+            }
+        }
+        return null;
+    }
+}
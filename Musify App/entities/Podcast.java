@@ -2,34 +2,40 @@ package entities;
 
 import exceptions.InvalidFormatException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 //import util.Constants;
 
 public class Podcast extends Media {
-    private ArrayList<String> hosts = new ArrayList<String>();
+    // read-only, since the media registry shares one list between equal rows
+    private final List<String> hosts;
     private String category;
+    private Category categoryType;
     private String seriesName;
     private int episodeNumber;
 
     public Podcast(String name, String description, ArrayList<String> hosts, String category, String seriesName, int episodeNumber, int duration, String captionFileName) throws InvalidFormatException {
         super(name, description, duration, captionFileName);
-        String upperCategory = category.toUpperCase();
-        if (!upperCategory.equals("HEALTH") && !upperCategory.equals("EDUCATION") && !upperCategory.equals("TECHNOLOGY")) {
-            throw new InvalidFormatException("Incorrect Category for Podcast. Skipping this line.");
+        categoryType = Category.parse(category);
+        if (categoryType == null) {
+            throw new RowFormatException("Incorrect Category for Podcast. Skipping this line.");
         }
         if (episodeNumber <= 0) {
-            throw new InvalidFormatException("Episode number not in correct format. Skipping this line.");
+            throw new RowFormatException("Episode number not in correct format. Skipping this line.");
         }
-        this.hosts = hosts;
+        this.hosts = Collections.unmodifiableList(hosts);
         this.category = category;
         this.seriesName = seriesName;
         this.episodeNumber = episodeNumber;
     }
 
     // GETTERS
-    public ArrayList<String> getHosts() {return hosts;}
+    public List<String> getHosts() {return hosts;}
     public String getCategory() {return category;}
+    public Category getCategoryType() {return categoryType;}
     public String getSeriesName() {return seriesName;}
     public int getEpisodeNumber() {return episodeNumber;}
+    public MediaType getType() {return MediaType.PODCAST;}
 
     @Override
     public String toString() {
@@ -0,0 +1,17 @@
+package entities;
+
+import exceptions.InvalidFormatException;
+
+// Bad rows are common in imported catalogs, so skip the stack trace.
+class RowFormatException extends InvalidFormatException {
+    private static final long serialVersionUID = 1L;
+
+    RowFormatException(String message) {
+        super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
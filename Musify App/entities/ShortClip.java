@@ -13,6 +13,7 @@ public class ShortClip extends Media {
 
     // GETTERS
     public String getArtistName() {return artistName;}
+    public MediaType getType() {return MediaType.SHORTCLIP;}
 
 
     @Override
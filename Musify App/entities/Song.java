@@ -2,25 +2,31 @@ package entities;
 
 import exceptions.InvalidFormatException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 
 public class Song extends Media {
-    private ArrayList<String> artists = new ArrayList<String>();
+    // read-only, since the media registry shares one list between equal rows
+    private final List<String> artists;
     private String genre;
+    private Genre genreType;
 
     public Song(String name, String description, ArrayList<String> artists, String genre, int duration, String captionFileName) throws InvalidFormatException {
         super(name, description, duration, captionFileName);
-        String upperGenre = genre.toUpperCase();
-        if (!upperGenre.equals("POP") && !upperGenre.equals("ROCK") && !upperGenre.equals("JAZZ")) {
-            throw new InvalidFormatException("Incorrect Genre for Song. Skipping this line.");
+        genreType = Genre.parse(genre);
+        if (genreType == null) {
+            throw new RowFormatException("Incorrect Genre for Song. Skipping this line.");
         }
-        this.artists = artists;
+        this.artists = Collections.unmodifiableList(artists);
         this.genre = genre;
     }
 
     // GETTERS
-    public ArrayList<String> getArtists() {return artists;}
+    public List<String> getArtists() {return artists;}
     public String getGenre() {return genre;}
+    public Genre getGenreType() {return genreType;}
+    public MediaType getType() {return MediaType.SONG;}
 
     @Override
     public String toString() {
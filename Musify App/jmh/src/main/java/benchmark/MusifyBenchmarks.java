@@ -0,0 +1,216 @@
+package benchmark;
+
+import entities.Media;
+import entities.Playlist;
+import entities.PlaylistCatalog;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import util.Constants;
+import util.CsvLine;
+import util.LineReader;
+import util.MediaParser;
+import util.MediaRegistry;
+import util.SearchIndex;
+
+/**
+ * JMH benchmarks for the operations MusifyBenchmark times by hand: parsing
+ * a playlist file, reading a caption file, looking playlists up by name,
+ * searching, removing media and saving, over generated catalogs of 10, 10k
+ * and 1M rows.
+ *
+ * Run through main, which adds the gc profiler, so every result comes with
+ * its allocation rate and bytes per operation (gc.alloc.rate.norm).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MusifyBenchmarks {
+    // lookups, searches and removals per operation, so large catalogs stay quick to run
+    private static final int MAX_OPERATIONS = 100000;
+
+    @Param({"10", "10000", "1000000"})
+    private int rows;
+
+    private File dir;
+    private File playlistFile;
+    private File captionFile;
+    private File saveFile;
+    private Playlist playlist;
+    private PlaylistCatalog catalog;
+    private String[] names;
+    private SearchIndex searchIndex;
+    private String[] queries;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("musify-jmh").toFile();
+        playlistFile = new File(dir, "bench_" + rows);
+        captionFile = new File(dir, "bench_caption_" + rows);
+        saveFile = new File(dir, "bench_save_" + rows);
+        MusifyBenchmark.generate(rows, playlistFile, captionFile);
+        playlist = load();
+
+        Random random = new Random(42);
+        catalog = new PlaylistCatalog();
+        int playlistCount = Math.min(rows, MAX_OPERATIONS);
+        for (int i = 0; i < playlistCount; i++) {
+            catalog.add(new Playlist("Playlist " + i, Constants.SONG, "playlist_" + i));
+        }
+        names = new String[playlistCount];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "PLAYLIST " + random.nextInt(playlistCount);
+        }
+
+        searchIndex = new SearchIndex();
+        for (Media media : playlist.getMediaList()) {
+            searchIndex.mediaAdded(playlist, media);
+        }
+        // a track number is in a handful of rows, like a real title search
+        queries = new String[Math.min(rows, 1000)];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = String.valueOf(random.nextInt(rows));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        playlistFile.delete();
+        captionFile.delete();
+        saveFile.delete();
+        dir.delete();
+    }
+
+    /** A playlist of its own for remove, put back together before every call. */
+    @State(Scope.Benchmark)
+    public static class Removal {
+        private Playlist playlist;
+        private String[] titles;
+        private final ArrayList<Media> removed = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp(MusifyBenchmarks benchmarks) throws Exception {
+            playlist = benchmarks.load();
+            Random random = new Random(7);
+            titles = new String[Math.min(benchmarks.rows, MAX_OPERATIONS)];
+            for (int i = 0; i < titles.length; i++) {
+                titles[i] = "title " + random.nextInt(benchmarks.rows);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() throws Exception {
+            for (Media media : removed) {
+                playlist.addMedia(media);
+            }
+            removed.clear();
+        }
+    }
+
+    @Benchmark
+    public Playlist parse() throws Exception {
+        return load();
+    }
+
+    // the uncached path of CaptionCache: read every line of a caption file
+    @Benchmark
+    public List<String> captionRead() throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        try (LineReader reader = new LineReader(captionFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Benchmark
+    public void lookup(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(catalog.find(name));
+        }
+    }
+
+    @Benchmark
+    public void search(Blackhole blackhole) {
+        for (String query : queries) {
+            blackhole.consume(searchIndex.search(query, Constants.SEARCH_RESULT_LIMIT));
+        }
+    }
+
+    // removes a random sample by title, ignoring case as the app does
+    @Benchmark
+    public int remove(Removal removal) {
+        for (String title : removal.titles) {
+            Media media = removal.playlist.removeMedia(title);
+            if (media != null) {
+                removal.removed.add(media);
+            }
+        }
+        return removal.removed.size();
+    }
+
+    // the same writes as MusifyApp.savePlaylistFile
+    @Benchmark
+    public int save() throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileOutputStream(saveFile))) {
+            for (Media media : playlist.getMediaList()) {
+                writer.println(media.toString());
+            }
+            if (writer.checkError()) {
+                throw new IOException("Could not write " + saveFile);
+            }
+        }
+        return playlist.size();
+    }
+
+    // a fresh registry per load, as MusifyApp uses, so dedupe hits from earlier runs do not count
+    private Playlist load() throws Exception {
+        Playlist loaded = new Playlist("Bench " + rows, Constants.SONG, playlistFile.getName(), rows);
+        MediaRegistry registry = new MediaRegistry();
+        try (LineReader reader = new LineReader(playlistFile)) {
+            CsvLine parts = new CsvLine();
+            while (reader.readLine(parts)) {
+                Media media = MediaParser.parse(parts, Constants.SONG, registry);
+                loaded.addMedia(media);
+                registry.register(media);
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,258 @@
+package service;
+
+import entities.Media;
+import entities.Playlist;
+import entities.PlaylistCatalog;
+import entities.PlaylistSnapshot;
+import exceptions.InvalidFormatException;
+import exceptions.InvalidLineException;
+import exceptions.PlaylistFullException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import util.Constants;
+import util.CsvLine;
+import util.LineReader;
+import util.MediaParser;
+import util.MediaRegistry;
+import util.SearchIndex;
+
+/**
+ * Many users' catalogs in one process.
+ *
+ * Writes to a user's catalog take one of a fixed set of striped locks, so
+ * writers for different users rarely contend. After each write the user's
+ * playlists are republished as an immutable map of PlaylistSnapshots through a
+ * volatile field, so reads take no lock and never wait for a writer.
+ */
+public class MusifyService {
+    private final ReentrantLock[] stripes;
+    private final ConcurrentHashMap<String, UserCatalog> users = new ConcurrentHashMap<>();
+
+    // One user's catalog: the mutable playlists, and the views readers see.
+    private static class UserCatalog {
+        private final PlaylistCatalog playlists = new PlaylistCatalog();
+        // synchronized on its own, so searches wait only for a write in progress
+        private final SearchIndex searchIndex = new SearchIndex();
+        private volatile Map<String, PlaylistSnapshot> views = Collections.emptyMap();
+
+        private UserCatalog() {
+            playlists.addListener(searchIndex);
+        }
+
+        // Called with the user's stripe held. Playlists cache their snapshot
+        // per version, so only the ones that changed are copied again.
+        private void publish() {
+            LinkedHashMap<String, PlaylistSnapshot> published = new LinkedHashMap<>();
+            for (Playlist playlist : playlists) {
+                published.put(key(playlist.getName()), playlist.snapshot());
+            }
+            views = Collections.unmodifiableMap(published);
+        }
+    }
+
+    public MusifyService() {
+        this(Integer.getInteger(Constants.SERVICE_STRIPES_PROPERTY, Constants.DEFAULT_SERVICE_STRIPES));
+    }
+
+    public MusifyService(int stripeCount) {
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public int getUserCount() {
+        return users.size();
+    }
+
+    public List<String> getUsers() {
+        return new ArrayList<>(users.keySet());
+    }
+
+    // READS: lock-free, from the last published views
+
+    public List<PlaylistSnapshot> getPlaylists(String user) {
+        UserCatalog catalog = users.get(key(user));
+        if (catalog == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(catalog.views.values());
+    }
+
+    public PlaylistSnapshot getPlaylist(String user, String playlistName) {
+        UserCatalog catalog = users.get(key(user));
+        return catalog == null ? null : catalog.views.get(key(playlistName));
+    }
+
+    public List<SearchIndex.Hit> search(String user, String query, int limit) {
+        UserCatalog catalog = users.get(key(user));
+        if (catalog == null) {
+            return Collections.emptyList();
+        }
+        return catalog.searchIndex.search(query, limit);
+    }
+
+    // WRITES: under the user's stripe
+
+    /** Returns false if the user already has a playlist with this name. */
+    public boolean createPlaylist(String user, String playlistName, String mediaType, String fileName) throws InvalidFormatException {
+        Playlist playlist = new Playlist(playlistName, mediaType, fileName);
+        ReentrantLock lock = lock(user);
+        try {
+            UserCatalog catalog = users.computeIfAbsent(key(user), k -> new UserCatalog());
+            if (!catalog.playlists.add(playlist)) {
+                return false;
+            }
+            catalog.publish();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns false if the user has no such playlist. The type is checked
+     * here, under the lock, as the playlist may have been replaced by one of
+     * another type since the caller looked it up.
+     */
+    public boolean addMedia(String user, String playlistName, Media media) throws InvalidFormatException, PlaylistFullException {
+        ReentrantLock lock = lock(user);
+        try {
+            UserCatalog catalog = users.get(key(user));
+            Playlist playlist = catalog == null ? null : catalog.playlists.find(playlistName);
+            if (playlist == null) {
+                return false;
+            }
+            if (media.getType() != playlist.getType()) {
+                throw new InvalidFormatException("Cannot add " + media.getType() + " to " + playlist.getType() + " playlist " + playlist.getName() + ".");
+            }
+            playlist.addMedia(media);
+            catalog.publish();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Removes the first media with this title, ignoring case, or returns null. */
+    public Media removeMedia(String user, String playlistName, String title) {
+        ReentrantLock lock = lock(user);
+        try {
+            UserCatalog catalog = users.get(key(user));
+            Playlist playlist = catalog == null ? null : catalog.playlists.find(playlistName);
+            Media removed = playlist == null ? null : playlist.removeMedia(title);
+            if (removed != null) {
+                catalog.publish();
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean removePlaylist(String user, String playlistName) {
+        ReentrantLock lock = lock(user);
+        try {
+            UserCatalog catalog = users.get(key(user));
+            Playlist removed = catalog == null ? null : catalog.playlists.remove(playlistName);
+            if (removed == null) {
+                return false;
+            }
+            catalog.publish();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads a user's catalog from an index file and its playlist files, in
+     * the formats MusifyApp reads. Returns how many lines were skipped.
+     *
+     * The files are read without the lock, so other users on the same
+     * stripe only wait for the loaded playlists to be added and published.
+     */
+    public int load(String user, File indexFile, File playlistDir) throws IOException {
+        int skipped = 0;
+        ArrayList<Playlist> loaded = new ArrayList<>();
+        HashSet<String> names = new HashSet<>();
+        // shares identical rows within this user's catalog only
+        MediaRegistry registry = new MediaRegistry();
+        try (LineReader index = new LineReader(indexFile)) {
+            CsvLine parts = new CsvLine();
+            while (index.readLine(parts)) {
+                try {
+                    if (parts.size() < 3) {
+                        throw new InvalidLineException("Invalid Playlist data. Skipping this line.");
+                    }
+                    Playlist playlist = new Playlist(parts.field(0), parts.field(1), parts.field(2));
+                    if (!names.add(key(playlist.getName()))) {
+                        throw new InvalidLineException("Duplicate Playlist name. Skipping this line.");
+                    }
+                    skipped += loadMedia(playlist, new File(playlistDir, playlist.getFileName()), registry);
+                    loaded.add(playlist);
+                } catch (InvalidLineException | InvalidFormatException e) {
+                    skipped++;
+                }
+            }
+        }
+
+        ReentrantLock lock = lock(user);
+        try {
+            UserCatalog catalog = users.computeIfAbsent(key(user), k -> new UserCatalog());
+            for (Playlist playlist : loaded) {
+                if (!catalog.playlists.add(playlist)) {
+                    // the user already has a playlist with this name
+                    skipped++;
+                }
+            }
+            catalog.publish();
+        } finally {
+            lock.unlock();
+        }
+        return skipped;
+    }
+
+    private static int loadMedia(Playlist playlist, File file, MediaRegistry registry) throws IOException {
+        int skipped = 0;
+        try (LineReader reader = new LineReader(file)) {
+            CsvLine parts = new CsvLine();
+            String mediaType = playlist.getMediaType().toUpperCase();
+            while (reader.readLine(parts)) {
+                try {
+                    Media media = MediaParser.parse(parts, mediaType, registry);
+                    if (media != null) {
+                        playlist.addMedia(media);
+                        registry.register(media);
+                    }
+                } catch (NumberFormatException | InvalidLineException | InvalidFormatException | PlaylistFullException e) {
+                    skipped++;
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // an empty playlist, as MusifyApp loads it
+            skipped++;
+        }
+        return skipped;
+    }
+
+    private ReentrantLock lock(String user) {
+        ReentrantLock lock = stripes[(key(user).hashCode() & 0x7fffffff) % stripes.length];
+        lock.lock();
+        return lock;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
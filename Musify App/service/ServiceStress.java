@@ -0,0 +1,151 @@
+package service;
+
+import entities.Media;
+import entities.PlaylistSnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import util.Constants;
+import util.MediaParser;
+import util.TableRenderer;
+
+/**
+ * Concurrency stress run for MusifyService: reader threads browse random
+ * users' playlists while one writer adds and removes media at a fixed rate.
+ * Each round doubles the readers up to the number of cores, so the read
+ * rate should grow about linearly if readers never wait for the writer.
+ * The writer is paced rather than run flat out so that it takes the same
+ * share of the CPU in every round; otherwise readers would gain CPU time
+ * from it as they are added, and the scaling would look better than it is.
+ *
+ * Readers also check every snapshot they read against its version. The
+ * writer only ever adds the extra song and removes it again, so a version
+ * alone says whether the playlist holds it, and with it what the size and
+ * total duration must be. A snapshot whose contents disagree with its
+ * version counts as a torn read.
+ *
+ * Usage: java service.ServiceStress [users] [playlists per user] [seconds per round] [max readers] [writes per second]
+ */
+public class ServiceStress {
+    private static final TableRenderer HEADER = new TableRenderer(Constants.STRESS_HEADER);
+    private static final TableRenderer ROW = new TableRenderer(Constants.STRESS_FORMATTER);
+    private static final int MEDIA_PER_PLAYLIST = 5;
+    private static final int DEFAULT_WRITES_PER_SECOND = 2000;
+    // a playlist's version and total once setup has added its songs
+    private static final long BASE_VERSION = MEDIA_PER_PLAYLIST;
+    private static final long BASE_DURATION = MEDIA_PER_PLAYLIST * (MEDIA_PER_PLAYLIST + 1) / 2;
+
+    public static void main(String[] args) throws Exception {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int playlistsPerUser = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxReaders = args.length > 3 ? Integer.parseInt(args[3]) : cores;
+        int writesPerSecond = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_WRITES_PER_SECOND;
+
+        MusifyService service = new MusifyService();
+        for (int u = 0; u < users; u++) {
+            for (int p = 0; p < playlistsPerUser; p++) {
+                service.createPlaylist("user" + u, "Playlist " + p, Constants.SONG, "playlist_" + p);
+                for (int m = 0; m < MEDIA_PER_PLAYLIST; m++) {
+                    service.addMedia("user" + u, "Playlist " + p, song(m));
+                }
+            }
+        }
+
+        System.out.println(users + " users, " + playlistsPerUser + " playlists each, " + cores + " cores, "
+                + writesPerSecond + " writes/s.");
+        StringBuilder out = new StringBuilder();
+        HEADER.appendRow(out, "Readers", "Reads/s", "Per reader/s", "Scaling", "Writes/s", "Torn reads");
+        out.append("--------------------------------------------------------------------------------");
+        System.out.println(out);
+        // an untimed round first, so the single-reader baseline is not measured while the JIT warms up
+        round(service, users, playlistsPerUser, 1, seconds, writesPerSecond);
+        double baseline = 0;
+        ArrayList<Integer> rounds = new ArrayList<>();
+        for (int readers = 1; readers < maxReaders; readers *= 2) {
+            rounds.add(readers);
+        }
+        rounds.add(maxReaders);
+        for (int readers : rounds) {
+            long[] result = round(service, users, playlistsPerUser, readers, seconds, writesPerSecond);
+            double readsPerSecond = result[0] / seconds;
+            if (baseline == 0) {
+                baseline = readsPerSecond;
+            }
+            out.setLength(0);
+            ROW.appendRow(out, readers, (long) readsPerSecond, (long) (readsPerSecond / readers),
+                    String.format("%.2fx", readsPerSecond / baseline), (long) (result[1] / seconds), result[2]);
+            System.out.print(out);
+        }
+    }
+
+    // Returns reads, writes and torn reads for one round.
+    private static long[] round(MusifyService service, int users, int playlistsPerUser, int readers, double seconds, int writesPerSecond) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder reads = new LongAdder();
+        LongAdder writes = new LongAdder();
+        LongAdder torn = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int r = 0; r < readers; r++) {
+            long seed = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                long count = 0;
+                while (running.get()) {
+                    PlaylistSnapshot view = service.getPlaylist("user" + random.nextInt(users), "playlist " + random.nextInt(playlistsPerUser));
+                    // odd numbers of writes since setup leave the extra song in
+                    boolean extra = (view.getVersion() - BASE_VERSION) % 2 == 1;
+                    long expectedDuration = BASE_DURATION + (extra ? MEDIA_PER_PLAYLIST + 1 : 0);
+                    int expectedSize = MEDIA_PER_PLAYLIST + (extra ? 1 : 0);
+                    if (view.getTotalDuration() != expectedDuration || view.size() != expectedSize) {
+                        torn.increment();
+                    }
+                    count++;
+                }
+                reads.add(count);
+            }));
+        }
+        threads.add(new Thread(() -> {
+            Random random = new Random(-1);
+            // each add and remove pair is due at a fixed interval from the start
+            long interval = 2 * 1000000000L / Math.max(1, writesPerSecond);
+            long due = System.nanoTime();
+            try {
+                while (running.get()) {
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                        continue;
+                    }
+                    String user = "user" + random.nextInt(users);
+                    String playlist = "Playlist " + random.nextInt(playlistsPerUser);
+                    service.addMedia(user, playlist, song(MEDIA_PER_PLAYLIST));
+                    service.removeMedia(user, playlist, "Stress song " + MEDIA_PER_PLAYLIST);
+                    writes.add(2);
+                    due += interval;
+                }
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        Thread.sleep((long) (seconds * 1000));
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[] {reads.sum(), writes.sum(), torn.sum()};
+    }
+
+    private static Media song(int number) throws Exception {
+        return MediaParser.parse("Stress song " + number + ",for the stress run,Artist " + number + ",POP," + (1 + number) + ",stress_" + number, Constants.SONG);
+    }
+}
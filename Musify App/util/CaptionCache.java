@@ -0,0 +1,141 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared LRU cache of caption file contents, keyed by caption file name and
+ * bounded by an estimated byte budget (-Dmusify.captionCache.bytes). A hit is
+ * only served while the file's modification time and length are unchanged.
+ */
+public class CaptionCache {
+    private static final CaptionCache SHARED = new CaptionCache(Long.getLong(Constants.CAPTION_CACHE_BYTES_PROPERTY, Constants.DEFAULT_CAPTION_CACHE_BYTES));
+
+    private final long maxBytes;
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    // access-ordered, so the first entry is always the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static class Entry {
+        private final List<String> lines;
+        private final long bytes;
+        private final long lastModified;
+        private final long length;
+
+        private Entry(List<String> lines, long bytes, long lastModified, long length) {
+            this.lines = lines;
+            this.bytes = bytes;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+    public CaptionCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static CaptionCache shared() {
+        return SHARED;
+    }
+
+    // GETTERS
+    public long getMaxBytes() {return maxBytes;}
+    public synchronized long getUsedBytes() {return usedBytes;}
+    public synchronized long getHits() {return hits;}
+    public synchronized long getMisses() {return misses;}
+    public synchronized long getEvictions() {return evictions;}
+    public synchronized int size() {return entries.size();}
+
+    public synchronized boolean contains(String fileName) {
+        return entries.containsKey(fileName);
+    }
+
+    /**
+     * The lines are shared with the cache, so they come back read-only.
+     * Throws FileNotFoundException for a missing file and IOException when
+     * it cannot be read.
+     */
+    public List<String> get(String fileName) throws IOException {
+        File file = new File(Constants.MEDIATEXT_DIR + fileName);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        synchronized (this) {
+            Entry entry = entries.get(fileName);
+            if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+                hits++;
+                return entry.lines;
+            }
+            misses++;
+        }
+        // read outside the lock so one slow file does not hold up other readers
+        List<String> lines = Collections.unmodifiableList(read(file));
+        put(fileName, lines, lastModified, length);
+        return lines;
+    }
+
+    public synchronized void invalidate(String fileName) {
+        Entry entry = entries.remove(fileName);
+        if (entry != null) {
+            usedBytes -= entry.bytes;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private synchronized void put(String fileName, List<String> lines, long lastModified, long length) {
+        long bytes = estimateBytes(lines);
+        if (bytes > maxBytes) {
+            invalidate(fileName);
+            return;
+        }
+        Entry previous = entries.put(fileName, new Entry(lines, bytes, lastModified, length));
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+        }
+        usedBytes += bytes;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && eldest.hasNext()) {
+            usedBytes -= eldest.next().getValue().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    private static ArrayList<String> read(File file) throws IOException {
+        ArrayList<String> lines = new ArrayList<>();
+        try (LineReader reader = new LineReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    // rough heap footprint: list slot plus String header and its char data
+    private static long estimateBytes(List<String> lines) {
+        long bytes = 64;
+        for (String line : lines) {
+            bytes += 48 + 2L * line.length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Caption cache: " + entries.size() + " files, " + usedBytes + "/" + maxBytes + " bytes, "
+                + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+    }
+}
@@ -0,0 +1,421 @@
+package util;
+
+import entities.*;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trigram index over the lines of every caption file in data/mediatext, for
+ * finding media by a line of their lyrics or transcript.
+ *
+ * The index is built on a background thread and saved next to the captions.
+ * On the next start it is reused as long as no caption file was added,
+ * removed or changed, and a query that finds the caption files changed
+ * waits for a rebuild. A query only reads the lines whose trigrams all
+ * match, to confirm the hit, streaming them past the caption cache so
+ * playback keeps its cached captions.
+ */
+public class CaptionIndex implements PlaylistListener {
+    private static final int MAGIC = 0x4D535458; // "MSTX"
+    private static final int VERSION = 1;
+
+    private final File directory;
+    private final File indexFile;
+    private volatile Index index;
+    private Thread builder;
+    // which playlist entries use each caption file
+    private final HashMap<String, ArrayList<Entry>> users = new HashMap<>();
+
+    /** One matching caption line and the media item that plays it. */
+    public static class Match {
+        private final Playlist playlist;
+        private final Media media;
+        private final int lineNumber;
+        private final String line;
+
+        private Match(Playlist playlist, Media media, int lineNumber, String line) {
+            this.playlist = playlist;
+            this.media = media;
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        // GETTERS
+        public Playlist getPlaylist() {return playlist;}
+        public Media getMedia() {return media;}
+        public int getLineNumber() {return lineNumber;}
+        public String getLine() {return line;}
+    }
+
+    private static class Entry {
+        private final Playlist playlist;
+        private final Media media;
+
+        private Entry(Playlist playlist, Media media) {
+            this.playlist = playlist;
+            this.media = media;
+        }
+    }
+
+    // immutable once built, so queries need no lock
+    private static class Index {
+        private String[] files;
+        private long[] modified;
+        private long[] lengths;
+        // global line id -> file and 1-based line number
+        private int[] lineFiles;
+        private int[] lineNumbers;
+        private HashMap<Long, int[]> trigrams;
+    }
+
+    public CaptionIndex(File directory, File indexFile) {
+        this.directory = directory;
+        this.indexFile = indexFile;
+    }
+
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /** Loads the saved index, or rebuilds and saves it, on a daemon thread. */
+    public synchronized void buildInBackground() {
+        if (builder == null) {
+            startBuild();
+        }
+    }
+
+    // The build to wait for, starting a new one if the caption files changed since the last.
+    private synchronized Thread currentBuild() {
+        if (builder == null || (!builder.isAlive() && (index == null || !covers(index, captionFiles())))) {
+            startBuild();
+        }
+        return builder;
+    }
+
+    private void startBuild() {
+        builder = new Thread(() -> {
+            File[] files = captionFiles();
+            Index loaded = load(files);
+            if (loaded == null) {
+                loaded = build(files);
+                try {
+                    save(loaded);
+                } catch (IOException e) {
+                    // the index still works from memory, it just gets rebuilt next time
+                }
+            }
+            index = loaded;
+        }, "caption-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    @Override
+    public synchronized void mediaAdded(Playlist playlist, Media media) {
+        users.computeIfAbsent(media.getCaptionFileName(), k -> new ArrayList<>()).add(new Entry(playlist, media));
+    }
+
+    @Override
+    public synchronized void mediaRemoved(Playlist playlist, Media media) {
+        ArrayList<Entry> entries = users.get(media.getCaptionFileName());
+        if (entries == null) {
+            return;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).playlist == playlist && entries.get(i).media == media) {
+                entries.remove(i);
+                break;
+            }
+        }
+        if (entries.isEmpty()) {
+            users.remove(media.getCaptionFileName());
+        }
+    }
+
+    /**
+     * Returns up to limit caption lines containing the text, ignoring case,
+     * for each media item that uses the caption file. Waits for the index if
+     * it is still being built.
+     */
+    public List<Match> find(String text, int limit) throws InterruptedException {
+        currentBuild().join();
+        Index current = index;
+        String query = text.toLowerCase(Locale.ROOT);
+        ArrayList<Match> matches = new ArrayList<>();
+        if (current == null || query.isEmpty()) {
+            return matches;
+        }
+        // candidates come in file order, so each file is opened once and read forward
+        LineReader reader = null;
+        int readerFile = -1;
+        int readerLine = 0;
+        try {
+            for (int lineId : candidates(current, query)) {
+                int file = current.lineFiles[lineId];
+                int lineNumber = current.lineNumbers[lineId];
+                if (file != readerFile) {
+                    closeQuietly(reader);
+                    reader = open(new File(directory, current.files[file]));
+                    readerFile = file;
+                    readerLine = 0;
+                }
+                String line = null;
+                try {
+                    while (reader != null && readerLine < lineNumber && (line = reader.readLine()) != null) {
+                        readerLine++;
+                    }
+                } catch (IOException e) {
+                    // the rest of an unreadable caption is left out, as a missing file is
+                    closeQuietly(reader);
+                    reader = null;
+                }
+                if (line == null || readerLine != lineNumber || !line.toLowerCase(Locale.ROOT).contains(query)) {
+                    continue;
+                }
+                ArrayList<Entry> entries;
+                synchronized (this) {
+                    entries = new ArrayList<>(users.getOrDefault(current.files[file], new ArrayList<>()));
+                }
+                for (Entry entry : entries) {
+                    matches.add(new Match(entry.playlist, entry.media, lineNumber, line));
+                    if (matches.size() >= limit) {
+                        return matches;
+                    }
+                }
+            }
+        } finally {
+            closeQuietly(reader);
+        }
+        return matches;
+    }
+
+    // line ids holding every trigram of the query, or every line for very short queries
+    private static int[] candidates(Index current, String query) {
+        if (query.length() < 3) {
+            int[] all = new int[current.lineFiles.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        int[] result = null;
+        for (long trigram : trigrams(query)) {
+            int[] lines = current.trigrams.get(trigram);
+            if (lines == null) {
+                return new int[0];
+            }
+            result = result == null ? lines : intersect(result, lines);
+            if (result.length == 0) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static LineReader open(File file) {
+        try {
+            return new LineReader(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void closeQuietly(LineReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // nothing was written, so there is nothing to lose
+        }
+    }
+
+    // true when the index was built from exactly these files, unchanged
+    private static boolean covers(Index built, File[] files) {
+        if (built.files.length != files.length) {
+            return false;
+        }
+        for (int f = 0; f < files.length; f++) {
+            if (!built.files[f].equals(files[f].getName()) || built.modified[f] != files[f].lastModified() || built.lengths[f] != files[f].length()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static HashSet<Long> trigrams(String lowerCaseText) {
+        HashSet<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= lowerCaseText.length(); i++) {
+            trigrams.add(((long) lowerCaseText.charAt(i) << 32) | ((long) lowerCaseText.charAt(i + 1) << 16) | lowerCaseText.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    private File[] captionFiles() {
+        File[] files = directory.listFiles(file -> file.isFile() && !file.getName().startsWith("."));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static Index build(File[] files) {
+        Index built = new Index();
+        built.files = new String[files.length];
+        built.modified = new long[files.length];
+        built.lengths = new long[files.length];
+        int[] lineFiles = new int[1024];
+        int[] lineNumbers = new int[1024];
+        int lineCount = 0;
+        HashMap<Long, int[]> postings = new HashMap<>();
+        // the last slot of each posting array holds how many ids it has so far
+        for (int f = 0; f < files.length; f++) {
+            built.files[f] = files[f].getName();
+            built.modified[f] = files[f].lastModified();
+            built.lengths[f] = files[f].length();
+            try (LineReader reader = new LineReader(files[f])) {
+                String line;
+                int lineNumber = 0;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (lineCount == lineFiles.length) {
+                        lineFiles = Arrays.copyOf(lineFiles, lineCount * 2);
+                        lineNumbers = Arrays.copyOf(lineNumbers, lineCount * 2);
+                    }
+                    lineFiles[lineCount] = f;
+                    lineNumbers[lineCount] = lineNumber;
+                    for (long trigram : trigrams(line.toLowerCase(Locale.ROOT))) {
+                        postings.put(trigram, append(postings.get(trigram), lineCount));
+                    }
+                    lineCount++;
+                }
+            } catch (IOException e) {
+                // an unreadable caption simply has no lines in the index
+            }
+        }
+        built.lineFiles = Arrays.copyOf(lineFiles, lineCount);
+        built.lineNumbers = Arrays.copyOf(lineNumbers, lineCount);
+        for (Map.Entry<Long, int[]> posting : postings.entrySet()) {
+            int[] ids = posting.getValue();
+            posting.setValue(Arrays.copyOf(ids, ids[ids.length - 1]));
+        }
+        built.trigrams = postings;
+        return built;
+    }
+
+    private static int[] append(int[] ids, int id) {
+        if (ids == null) {
+            ids = new int[4];
+        }
+        int count = ids[ids.length - 1];
+        if (count == ids.length - 1) {
+            int[] grown = Arrays.copyOf(ids, ids.length * 2);
+            grown[grown.length - 1] = count;
+            ids = grown;
+        }
+        ids[count] = id;
+        ids[ids.length - 1] = count + 1;
+        return ids;
+    }
+
+    private void save(Index saved) throws IOException {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(saved.files.length);
+            for (int f = 0; f < saved.files.length; f++) {
+                out.writeUTF(saved.files[f]);
+                out.writeLong(saved.modified[f]);
+                out.writeLong(saved.lengths[f]);
+            }
+            out.writeInt(saved.lineFiles.length);
+            for (int i = 0; i < saved.lineFiles.length; i++) {
+                out.writeInt(saved.lineFiles[i]);
+                out.writeInt(saved.lineNumbers[i]);
+            }
+            out.writeInt(saved.trigrams.size());
+            for (Map.Entry<Long, int[]> posting : saved.trigrams.entrySet()) {
+                out.writeLong(posting.getKey());
+                out.writeInt(posting.getValue().length);
+                for (int id : posting.getValue()) {
+                    out.writeInt(id);
+                }
+            }
+        }
+        Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // null unless the saved index covers exactly these files, unchanged
+    private Index load(File[] files) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != files.length) {
+                return null;
+            }
+            Index loaded = new Index();
+            loaded.files = new String[files.length];
+            loaded.modified = new long[files.length];
+            loaded.lengths = new long[files.length];
+            for (int f = 0; f < files.length; f++) {
+                loaded.files[f] = in.readUTF();
+                loaded.modified[f] = in.readLong();
+                loaded.lengths[f] = in.readLong();
+                if (!loaded.files[f].equals(files[f].getName()) || loaded.modified[f] != files[f].lastModified() || loaded.lengths[f] != files[f].length()) {
+                    return null;
+                }
+            }
+            int lineCount = in.readInt();
+            loaded.lineFiles = new int[lineCount];
+            loaded.lineNumbers = new int[lineCount];
+            for (int i = 0; i < lineCount; i++) {
+                loaded.lineFiles[i] = in.readInt();
+                loaded.lineNumbers[i] = in.readInt();
+            }
+            int trigramCount = in.readInt();
+            loaded.trigrams = new HashMap<>(trigramCount * 2);
+            for (int t = 0; t < trigramCount; t++) {
+                long trigram = in.readLong();
+                int[] ids = new int[in.readInt()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = in.readInt();
+                }
+                loaded.trigrams.put(trigram, ids);
+            }
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
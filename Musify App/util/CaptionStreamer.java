@@ -0,0 +1,51 @@
+package util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Copies a caption file to an output stream in fixed-size chunks, so a long
+ * transcript is never held in memory as lines.
+ */
+public class CaptionStreamer {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(Charset.defaultCharset());
+
+    private CaptionStreamer() {
+    }
+
+    /**
+     * Writes the file's bytes as they are and ends with a line break if the
+     * file does not, the way println would. Returns the bytes copied.
+     */
+    public static long copy(File file, OutputStream out) throws IOException {
+        ByteBuffer buffer = BUFFERS.get();
+        long copied = 0;
+        byte last = '\n';
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (true) {
+                buffer.clear();
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                if (read > 0) {
+                    out.write(buffer.array(), 0, read);
+                    last = buffer.get(read - 1);
+                    copied += read;
+                }
+            }
+        }
+        if (last != '\n' && last != '\r') {
+            out.write(LINE_SEPARATOR);
+        }
+        out.flush();
+        return copied;
+    }
+}
@@ -0,0 +1,254 @@
+package util;
+
+import entities.*;
+import exceptions.InvalidFormatException;
+import exceptions.PlaylistFullException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Compact binary copy of the whole catalog, written on save and read at
+ * startup in place of the text index and playlist files.
+ *
+ * Layout: magic, version, string table, the size and modification time of
+ * the index file, the index lines the text loader rejects, then every
+ * playlist with the size and modification time of its text file and its
+ * media rows, where every string is an index into the table. If the index
+ * or any playlist file no longer matches, the snapshot is not used.
+ */
+public class CatalogSnapshot {
+    private static final int MAGIC = 0x4D534659; // "MSFY"
+    private static final int VERSION = 2;
+
+    private static final byte SONG = 0;
+    private static final byte PODCAST = 1;
+    private static final byte SHORTCLIP = 2;
+
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    /**
+     * An index line the text loader skips, kept so that loading from the
+     * snapshot reports it the same way. position is how many playlists
+     * were loaded before it.
+     */
+    public static class Rejection {
+        private final int position;
+        private final String message;
+        private final String source;
+        private final long lineNumber;
+        private final String line;
+
+        public Rejection(int position, String message, String source, long lineNumber, String line) {
+            this.position = position;
+            this.message = message;
+            this.source = source;
+            this.lineNumber = lineNumber;
+            this.line = line;
+        }
+
+        // GETTERS
+        public int getPosition() {return position;}
+        public String getMessage() {return message;}
+        public String getSource() {return source;}
+        public long getLineNumber() {return lineNumber;}
+        public String getLine() {return line;}
+    }
+
+    /** What a snapshot holds: the playlists, and the index lines skipped around them. */
+    public static class Contents {
+        private final ArrayList<Playlist> playlists;
+        private final ArrayList<Rejection> rejections;
+
+        private Contents(ArrayList<Playlist> playlists, ArrayList<Rejection> rejections) {
+            this.playlists = playlists;
+            this.rejections = rejections;
+        }
+
+        // GETTERS
+        public ArrayList<Playlist> getPlaylists() {return playlists;}
+        public ArrayList<Rejection> getRejections() {return rejections;}
+    }
+
+    private CatalogSnapshot() {
+    }
+
+    public static void write(File snapshot, File index, PlaylistCatalog playlists, List<Rejection> rejections) throws IOException {
+        CatalogSnapshot writer = new CatalogSnapshot();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        writer.writeBody(new DataOutputStream(body), index, playlists, rejections);
+
+        File temp = new File(snapshot.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(writer.strings.size());
+            for (String value : writer.strings) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            body.writeTo(out);
+        }
+        // replace in one step so a crash never leaves a half-written snapshot behind
+        Files.move(temp.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the snapshot's contents, or null when it has another version,
+     * is damaged, or the index or any playlist file changed since it was
+     * written.
+     */
+    public static Contents read(File snapshot, File index, MediaRegistry registry) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshot)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String[] table = new String[in.readInt()];
+            for (int i = 0; i < table.length; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                table[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return readBody(in, table, index, registry);
+        } catch (IOException | InvalidFormatException | PlaylistFullException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void writeBody(DataOutputStream out, File index, PlaylistCatalog playlists, List<Rejection> rejections) throws IOException {
+        out.writeLong(index.lastModified());
+        out.writeLong(index.length());
+        out.writeInt(rejections.size());
+        for (Rejection rejection : rejections) {
+            out.writeInt(rejection.position);
+            out.writeInt(id(rejection.message));
+            out.writeInt(id(rejection.source));
+            out.writeLong(rejection.lineNumber);
+            out.writeInt(id(rejection.line));
+        }
+        out.writeInt(playlists.size());
+        for (Playlist playlist : playlists) {
+            File file = new File(Constants.PLAYLIST_DIR + playlist.getFileName());
+            out.writeInt(id(playlist.getName()));
+            out.writeInt(id(playlist.getMediaType()));
+            out.writeInt(id(playlist.getFileName()));
+            out.writeLong(file.lastModified());
+            out.writeLong(file.length());
+            out.writeInt(playlist.size());
+            for (Media media : playlist.getMediaList()) {
+                writeMedia(out, media);
+            }
+        }
+    }
+
+    private void writeMedia(DataOutputStream out, Media media) throws IOException {
+        if (media instanceof Song) {
+            out.writeByte(SONG);
+        } else if (media instanceof Podcast) {
+            out.writeByte(PODCAST);
+        } else {
+            out.writeByte(SHORTCLIP);
+        }
+        out.writeInt(id(media.getName()));
+        out.writeInt(id(media.getDescription()));
+        out.writeInt(media.getDuration());
+        out.writeInt(id(media.getCaptionFileName()));
+        if (media instanceof Song) {
+            Song song = (Song) media;
+            writeNames(out, song.getArtists());
+            out.writeInt(id(song.getGenre()));
+        } else if (media instanceof Podcast) {
+            Podcast podcast = (Podcast) media;
+            writeNames(out, podcast.getHosts());
+            out.writeInt(id(podcast.getCategory()));
+            out.writeInt(id(podcast.getSeriesName()));
+            out.writeInt(podcast.getEpisodeNumber());
+        } else {
+            out.writeInt(id(((ShortClip) media).getArtistName()));
+        }
+    }
+
+    private void writeNames(DataOutputStream out, List<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeInt(id(name));
+        }
+    }
+
+    private int id(String value) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    private static Contents readBody(DataInputStream in, String[] table, File index, MediaRegistry registry) throws IOException, InvalidFormatException, PlaylistFullException {
+        if (index.lastModified() != in.readLong() || index.length() != in.readLong()) {
+            return null;
+        }
+        int rejectionCount = in.readInt();
+        ArrayList<Rejection> rejections = new ArrayList<>(rejectionCount);
+        for (int i = 0; i < rejectionCount; i++) {
+            rejections.add(new Rejection(in.readInt(), table[in.readInt()], table[in.readInt()], in.readLong(), table[in.readInt()]));
+        }
+        int playlistCount = in.readInt();
+        ArrayList<Playlist> playlists = new ArrayList<>(playlistCount);
+        for (int i = 0; i < playlistCount; i++) {
+            Playlist playlist = new Playlist(table[in.readInt()], table[in.readInt()], table[in.readInt()]);
+            File file = new File(Constants.PLAYLIST_DIR + playlist.getFileName());
+            long lastModified = in.readLong();
+            long length = in.readLong();
+            // a missing file is left to the text loader, which reports it
+            if (!file.isFile() || file.lastModified() != lastModified || file.length() != length) {
+                return null;
+            }
+            int mediaCount = in.readInt();
+            for (int j = 0; j < mediaCount; j++) {
+                Media media = registry.dedupe(readMedia(in, table));
+                playlist.addMedia(media);
+                registry.register(media);
+            }
+            playlists.add(playlist);
+        }
+        return new Contents(playlists, rejections);
+    }
+
+    private static Media readMedia(DataInputStream in, String[] table) throws IOException, InvalidFormatException {
+        byte kind = in.readByte();
+        String name = table[in.readInt()];
+        String description = table[in.readInt()];
+        int duration = in.readInt();
+        String captionFileName = table[in.readInt()];
+        switch (kind) {
+            case SONG:
+                ArrayList<String> artists = readNames(in, table);
+                return new Song(name, description, artists, table[in.readInt()], duration, captionFileName);
+            case PODCAST:
+                ArrayList<String> hosts = readNames(in, table);
+                String category = table[in.readInt()];
+                String seriesName = table[in.readInt()];
+                return new Podcast(name, description, hosts, category, seriesName, in.readInt(), duration, captionFileName);
+            case SHORTCLIP:
+                return new ShortClip(name, description, table[in.readInt()], duration, captionFileName);
+        }
+        throw new IOException("Unknown media kind " + kind);
+    }
+
+    private static ArrayList<String> readNames(DataInputStream in, String[] table) throws IOException {
+        int count = in.readInt();
+        ArrayList<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(table[in.readInt()]);
+        }
+        return names;
+    }
+}
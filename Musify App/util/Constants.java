@@ -14,6 +14,14 @@ public class Constants {
     public static final String PODCAST_DATA_FORMATTER = "|%2d|%30s|%30s|%30s|%15s|%20s|%8d|%16d|%n";
     public static final String SHORTCLIP_PLAYLIST_HEADER = "|%2s|%30s|%30s|%30s|%16s|%n";
     public static final String SHORTCLIP_DATA_FORMATTER = "|%2d|%30s|%30s|%30s|%16d|%n";
+    public static final String SEARCH_HEADER = "|%2s|%30s|%10s|%30s|%6s|%n";
+    public static final String SEARCH_DATA_FORMATTER = "|%2d|%30s|%10s|%30s|%6d|%n";
+    public static final String PLAYTIME_HEADER = "|%30s|%10s|%12s|%n";
+    public static final String PLAYTIME_DATA_FORMATTER = "|%30s|%10d|%12d|%n";
+    public static final String DURATION_HEADER = "|%2s|%30s|%10s|%30s|%6s|%n";
+    public static final String DURATION_DATA_FORMATTER = "|%2d|%30s|%10s|%30s|%6d|%n";
+    public static final String SCRIPT_SUMMARY_HEADER = "|%10s|%8s|%10s|%10s|%10s|%10s|%10s|%12s|%n";
+    public static final String SCRIPT_SUMMARY_FORMATTER = "|%10s|%8d|%10d|%10d|%10d|%10d|%10d|%12d|%n";
    
    /* add more constants here */
     public static final int CREATE_PLAYLIST = 1;
@@ -23,6 +31,12 @@ public class Constants {
     public static final int MODIFY_PLAYLIST = 5;
     public static final int PLAY_CONTENTS = 6;
     public static final int QUIT_MAIN = 7;
+    public static final int SEARCH_MEDIA = 8;
+    public static final int FIND_BY_LYRIC = 9;
+    public static final int SHOW_PLAYTIME = 10;
+    public static final int FIND_BY_DURATION = 11;
+    public static final int FILTER_BY_FACETS = 12;
+    public static final int PLAY_QUEUE = 13;
 
     public static final int SUBMENU_VIEW_PLAYLIST = 1;
     public static final int ADD_MEDIA = 2;
@@ -33,9 +47,81 @@ public class Constants {
     public static final String PODCAST = "PODCAST";
     public static final String SHORTCLIP = "SHORTCLIP";
 
+    public static final String SCRIPT_OPTION = "--script";
+
+    public static final String PREFETCH_DEPTH_PROPERTY = "musify.prefetch.depth";
+    public static final int DEFAULT_PREFETCH_DEPTH = 2;
+
+    public static final String SERVICE_STRIPES_PROPERTY = "musify.service.stripes";
+    public static final int DEFAULT_SERVICE_STRIPES = 64;
+    public static final String STRESS_HEADER = "|%8s|%14s|%14s|%10s|%12s|%12s|%n";
+    public static final String STRESS_FORMATTER = "|%8d|%14d|%14d|%10s|%12d|%12d|%n";
+
+    public static final int DEFAULT_HTTP_PORT = 8090;
+    public static final String HTTP_THREADS_PROPERTY = "musify.http.threads";
+
+    public static final String JMX_PROPERTY = "musify.jmx";
+    public static final String ERRORS_PROPERTY = "musify.errors";
+    public static final String ERRORS_SUMMARY = "summary";
+    public static final String ERROR_SAMPLES_PROPERTY = "musify.errors.samples";
+    public static final int DEFAULT_ERROR_SAMPLES = 10;
+    public static final String METRICS_OBJECT_NAME = "musify:type=LoadMetrics";
+    public static final String METRICS_HEADER = "|%16s|%8s|%10s|%10s|%10s|%10s|%10s|%n";
+    public static final String METRICS_FORMATTER = "|%16s|%8d|%10d|%10d|%10d|%10d|%10d|%n";
+
+    public static final String BENCH_HEADER = "|%12s|%8s|%12s|%12s|%14s|%12s|%n";
+    public static final String BENCH_FORMATTER = "|%12s|%8d|%12d|%12d|%14d|%12d|%n";
+    public static final String BENCH_WARMUP_PROPERTY = "musify.bench.warmup";
+    public static final int DEFAULT_BENCH_WARMUP = 3;
+    public static final String BENCH_ITERATIONS_PROPERTY = "musify.bench.iterations";
+    public static final int DEFAULT_BENCH_ITERATIONS = 5;
+
     public static final String ADD_KEY = "A";
     public static final String QUIT_KEY = "Q";
 
+    // the original six item limit unless -Dmusify.playlist.capacity says otherwise
+    public static final String PLAYLIST_CAPACITY_PROPERTY = "musify.playlist.capacity";
+    public static final int DEFAULT_PLAYLIST_CAPACITY = 6;
+
+    // data files larger than this are memory-mapped rather than read through a buffer
+    public static final String MMAP_THRESHOLD_PROPERTY = "musify.mmap.threshold";
+    public static final long DEFAULT_MMAP_THRESHOLD = 1024 * 1024;
+
+    // listings stop for Enter after this many rows, -Dmusify.page.size=0 turns paging off
+    public static final String PAGE_SIZE_PROPERTY = "musify.page.size";
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    public static final int SEARCH_RESULT_LIMIT = 20;
+    public static final String CAPTION_INDEX_FILE = "data/mediatext/.captions.tri";
+
+    public static final String DATA_DIR = "data/";
+    public static final String PLAYLIST_DIR = "data/playlist/";
+    public static final String MEDIATEXT_DIR = "data/mediatext/";
+
+    // -Dmusify.loader.threads=N loads playlist files on N threads (0 = one per core)
+    public static final String LOADER_THREADS_PROPERTY = "musify.loader.threads";
+
+    // -Dmusify.captions=eager|check|lazy controls how much caption I/O happens at load time
+    public static final String CAPTIONS_PROPERTY = "musify.captions";
+    public static final String CAPTIONS_EAGER = "eager";
+    public static final String CAPTIONS_CHECK = "check";
+    public static final String CAPTIONS_LAZY = "lazy";
+
+    public static final String CAPTION_CACHE_BYTES_PROPERTY = "musify.captionCache.bytes";
+    public static final long DEFAULT_CAPTION_CACHE_BYTES = 16L * 1024 * 1024;
+    // captions longer than this are streamed during playback instead of cached
+    public static final long STREAM_CAPTION_BYTES = 256 * 1024;
+
+    // binary catalog written next to the index on save, -Dmusify.snapshot=false ignores it
+    public static final String SNAPSHOT_PROPERTY = "musify.snapshot";
+    public static final String SNAPSHOT_SUFFIX = ".snap";
+
+    // unsaved edits, folded into the playlist files once past -Dmusify.journal.maxBytes
+    // the journal sits next to the index file it belongs to
+    public static final String JOURNAL_SUFFIX = ".journal";
+    public static final String JOURNAL_MAX_BYTES_PROPERTY = "musify.journal.maxBytes";
+    public static final long DEFAULT_JOURNAL_MAX_BYTES = 1024 * 1024;
+
 
 
 
@@ -0,0 +1,139 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Field view over one comma separated line. Only field offsets are stored,
+ * in arrays reused from line to line, and numbers are parsed straight from
+ * the line's characters.
+ *
+ * Field boundaries follow line.split(","): trailing empty fields are
+ * dropped and a line without commas is a single field.
+ */
+public class CsvLine {
+    // Bad numbers are common in imported catalogs, so skip the stack trace.
+    private static class BadNumberException extends NumberFormatException {
+        private static final long serialVersionUID = 1L;
+
+        private BadNumberException(String input) {
+            super("For input string: \"" + input + "\"");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private String line = "";
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+
+    public CsvLine reset(String line) {
+        this.line = line;
+        size = 0;
+        int start = 0;
+        int comma;
+        while ((comma = line.indexOf(',', start)) >= 0) {
+            addField(start, comma);
+            start = comma + 1;
+        }
+        if (size == 0) {
+            addField(0, line.length());
+            return this;
+        }
+        addField(start, line.length());
+        while (size > 0 && starts[size - 1] == ends[size - 1]) {
+            size--;
+        }
+        return this;
+    }
+
+    // GETTERS
+    public String getLine() {return line;}
+    public int size() {return size;}
+
+    public String field(int index) {
+        checkIndex(index);
+        return line.substring(starts[index], ends[index]);
+    }
+
+    /**
+     * Parses the field the way Integer.parseInt would, including throwing
+     * NumberFormatException, without cutting it out of the line first.
+     */
+    public int intField(int index) {
+        checkIndex(index);
+        int position = starts[index];
+        int end = ends[index];
+        if (position == end) {
+            throw new BadNumberException("");
+        }
+        boolean negative = false;
+        char first = line.charAt(position);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++position == end) {
+                throw new BadNumberException(field(index));
+            }
+        }
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; position < end; position++) {
+            int digit = Character.digit(line.charAt(position), 10);
+            if (digit < 0) {
+                throw new BadNumberException(field(index));
+            }
+            value = value * 10 + digit;
+            if (value > limit) {
+                throw new BadNumberException(field(index));
+            }
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Splits a field on the separator into names, matching
+     * field.split(separator).
+     */
+    public ArrayList<String> names(int index, char separator) {
+        checkIndex(index);
+        ArrayList<String> names = new ArrayList<String>();
+        int start = starts[index];
+        int end = ends[index];
+        int position = start;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == separator) {
+                names.add(line.substring(position, i));
+                position = i + 1;
+            }
+        }
+        if (names.isEmpty()) {
+            names.add(line.substring(start, end));
+            return names;
+        }
+        names.add(line.substring(position, end));
+        while (!names.isEmpty() && names.get(names.size() - 1).isEmpty()) {
+            names.remove(names.size() - 1);
+        }
+        return names;
+    }
+
+    private void addField(int start, int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+    }
+}
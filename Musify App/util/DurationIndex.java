@@ -0,0 +1,82 @@
+package util;
+
+import entities.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Media in the catalog sorted by duration, with the running total playtime.
+ * It listens to the catalog like SearchIndex, so top-N and range queries
+ * never have to walk every playlist.
+ */
+public class DurationIndex implements PlaylistListener {
+    // duration -> entries with that duration, each with how often it is in its playlist
+    private final TreeMap<Integer, LinkedHashMap<PlaylistEntry, int[]>> byDuration = new TreeMap<>();
+    private long totalDuration;
+    private long count;
+
+    // GETTERS
+    public synchronized long getTotalDuration() {return totalDuration;}
+    public synchronized long getCount() {return count;}
+
+    @Override
+    public synchronized void mediaAdded(Playlist playlist, Media media) {
+        byDuration.computeIfAbsent(media.getDuration(), k -> new LinkedHashMap<>())
+            .computeIfAbsent(new PlaylistEntry(playlist, media), k -> new int[1])[0]++;
+        totalDuration += media.getDuration();
+        count++;
+    }
+
+    @Override
+    public synchronized void mediaRemoved(Playlist playlist, Media media) {
+        LinkedHashMap<PlaylistEntry, int[]> items = byDuration.get(media.getDuration());
+        if (items == null) {
+            return;
+        }
+        PlaylistEntry entry = new PlaylistEntry(playlist, media);
+        int[] copies = items.get(entry);
+        if (copies == null) {
+            return;
+        }
+        if (--copies[0] == 0) {
+            items.remove(entry);
+            if (items.isEmpty()) {
+                byDuration.remove(media.getDuration());
+            }
+        }
+        totalDuration -= media.getDuration();
+        count--;
+    }
+
+    /** The limit longest media, longest first; ties stay in the order they were added. */
+    public synchronized List<PlaylistEntry> longest(int limit) {
+        return collect(byDuration.descendingMap(), limit);
+    }
+
+    /** Media lasting from min to max minutes inclusive, shortest first, at most limit of them. */
+    public synchronized List<PlaylistEntry> between(int min, int max, int limit) {
+        if (min > max) {
+            return new ArrayList<>();
+        }
+        return collect(byDuration.subMap(min, true, max, true), limit);
+    }
+
+    private static List<PlaylistEntry> collect(NavigableMap<Integer, LinkedHashMap<PlaylistEntry, int[]>> durations, int limit) {
+        ArrayList<PlaylistEntry> items = new ArrayList<>();
+        for (LinkedHashMap<PlaylistEntry, int[]> sameDuration : durations.values()) {
+            for (Map.Entry<PlaylistEntry, int[]> entry : sameDuration.entrySet()) {
+                for (int i = 0; i < entry.getValue()[0]; i++) {
+                    if (items.size() >= limit) {
+                        return items;
+                    }
+                    items.add(entry.getKey());
+                }
+            }
+        }
+        return items;
+    }
+}
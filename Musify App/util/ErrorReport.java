@@ -0,0 +1,58 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Summary of the rows skipped while loading: a count per reason and the
+ * first few offending lines, printed once instead of one message per row.
+ * Used when loading with -Dmusify.errors=summary.
+ */
+public class ErrorReport {
+    private final int maxSamples;
+    // reason messages are constants, so counting them allocates nothing per row
+    private final LinkedHashMap<String, int[]> counts = new LinkedHashMap<>();
+    private final ArrayList<String> samples = new ArrayList<>();
+    private long total;
+
+    public ErrorReport(int maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    // GETTERS
+    public synchronized long getTotal() {return total;}
+    public synchronized boolean isEmpty() {return total == 0;}
+
+    // lineNumber 0 means the entry is not a line of the source, such as a missing file
+    public synchronized void reject(String reason, String source, long lineNumber, String line) {
+        int[] count = counts.get(reason);
+        if (count == null) {
+            count = new int[1];
+            counts.put(reason, count);
+        }
+        count[0]++;
+        total++;
+        if (samples.size() < maxSamples) {
+            samples.add(lineNumber > 0 ? source + ":" + lineNumber + ": " + line : source + ": " + line);
+        }
+    }
+
+    public synchronized String toString() {
+        String lineSeparator = System.lineSeparator();
+        StringBuilder report = new StringBuilder();
+        report.append("Skipped ").append(total).append(total == 1 ? " entry:" : " entries:").append(lineSeparator);
+        ArrayList<Map.Entry<String, int[]>> reasons = new ArrayList<>(counts.entrySet());
+        reasons.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+        for (Map.Entry<String, int[]> reason : reasons) {
+            report.append(String.format("%8d  %s", reason.getValue()[0], reason.getKey())).append(lineSeparator);
+        }
+        if (!samples.isEmpty()) {
+            report.append("First ").append(samples.size()).append(" skipped:").append(lineSeparator);
+            for (String sample : samples) {
+                report.append("  ").append(sample).append(lineSeparator);
+            }
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package util;
+
+import entities.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitmap indexes over every media entry in the catalog, one bitmap per media
+ * type, genre and category, plus a column of durations. Filters such as
+ * "JAZZ songs up to 4 minutes" are answered by AND-ing bitmaps and scanning
+ * the duration column, and facet counts are bitmap cardinalities, so the
+ * media objects are never touched.
+ *
+ * Each entry takes a row; rows freed by removals are reused.
+ */
+public class FacetIndex implements PlaylistListener {
+    private final EnumMap<MediaType, BitSet> types = new EnumMap<>(MediaType.class);
+    private final EnumMap<Genre, BitSet> genres = new EnumMap<>(Genre.class);
+    private final EnumMap<Category, BitSet> categories = new EnumMap<>(Category.class);
+    private final BitSet live = new BitSet();
+    private PlaylistEntry[] entries = new PlaylistEntry[64];
+    private int[] durations = new int[64];
+    private int rows;
+    private final ArrayDeque<Integer> freeRows = new ArrayDeque<>();
+    // rows of each entry; an item can be in a playlist more than once
+    private final HashMap<PlaylistEntry, ArrayDeque<Integer>> rowsByEntry = new HashMap<>();
+
+    public FacetIndex() {
+        for (MediaType type : MediaType.values()) {
+            types.put(type, new BitSet());
+        }
+        for (Genre genre : Genre.values()) {
+            genres.put(genre, new BitSet());
+        }
+        for (Category category : Category.values()) {
+            categories.put(category, new BitSet());
+        }
+    }
+
+    public synchronized int size() {
+        return live.cardinality();
+    }
+
+    @Override
+    public synchronized void mediaAdded(Playlist playlist, Media media) {
+        PlaylistEntry entry = new PlaylistEntry(playlist, media);
+        int row = freeRows.isEmpty() ? rows++ : freeRows.pop();
+        if (row == entries.length) {
+            entries = Arrays.copyOf(entries, row * 2);
+            durations = Arrays.copyOf(durations, row * 2);
+        }
+        entries[row] = entry;
+        durations[row] = media.getDuration();
+        live.set(row);
+        types.get(playlist.getType()).set(row);
+        if (media instanceof Song) {
+            genres.get(((Song) media).getGenreType()).set(row);
+        } else if (media instanceof Podcast) {
+            categories.get(((Podcast) media).getCategoryType()).set(row);
+        }
+        rowsByEntry.computeIfAbsent(entry, k -> new ArrayDeque<>()).add(row);
+    }
+
+    @Override
+    public synchronized void mediaRemoved(Playlist playlist, Media media) {
+        PlaylistEntry entry = new PlaylistEntry(playlist, media);
+        ArrayDeque<Integer> entryRows = rowsByEntry.get(entry);
+        if (entryRows == null) {
+            return;
+        }
+        int row = entryRows.pop();
+        if (entryRows.isEmpty()) {
+            rowsByEntry.remove(entry);
+        }
+        live.clear(row);
+        for (BitSet bitmap : types.values()) {
+            bitmap.clear(row);
+        }
+        for (BitSet bitmap : genres.values()) {
+            bitmap.clear(row);
+        }
+        for (BitSet bitmap : categories.values()) {
+            bitmap.clear(row);
+        }
+        entries[row] = null;
+        freeRows.push(row);
+    }
+
+    /**
+     * Entries matching every given facet (a MediaType, Genre or Category;
+     * none means any) and lasting minDuration to maxDuration minutes.
+     */
+    public synchronized List<PlaylistEntry> filter(List<Enum<?>> facets, int minDuration, int maxDuration) {
+        BitSet matches = matching(facets);
+        ArrayList<PlaylistEntry> found = new ArrayList<>();
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            if (durations[row] >= minDuration && durations[row] <= maxDuration) {
+                found.add(entries[row]);
+            }
+        }
+        return found;
+    }
+
+    /** How many of the entries matching the facets have each media type, genre and category. */
+    public synchronized LinkedHashMap<Enum<?>, Integer> counts(List<Enum<?>> facets) {
+        BitSet matches = matching(facets);
+        LinkedHashMap<Enum<?>, Integer> counts = new LinkedHashMap<>();
+        count(types, matches, counts);
+        count(genres, matches, counts);
+        count(categories, matches, counts);
+        return counts;
+    }
+
+    private static void count(EnumMap<?, BitSet> bitmaps, BitSet matches, LinkedHashMap<Enum<?>, Integer> counts) {
+        for (Map.Entry<? extends Enum<?>, BitSet> facet : bitmaps.entrySet()) {
+            BitSet both = (BitSet) facet.getValue().clone();
+            both.and(matches);
+            counts.put(facet.getKey(), both.cardinality());
+        }
+    }
+
+    private BitSet matching(List<Enum<?>> facets) {
+        BitSet matches = (BitSet) live.clone();
+        for (Enum<?> facet : facets) {
+            if (facet instanceof MediaType) {
+                matches.and(types.get(facet));
+            } else if (facet instanceof Genre) {
+                matches.and(genres.get(facet));
+            } else if (facet instanceof Category) {
+                matches.and(categories.get(facet));
+            }
+        }
+        return matches;
+    }
+}
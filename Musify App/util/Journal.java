@@ -0,0 +1,239 @@
+package util;
+
+import entities.Media;
+import entities.Playlist;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only log of playlist edits made since the last save. Each edit is
+ * one tab separated line, flushed as soon as it is written, so a crash
+ * loses nothing that was already entered.
+ *
+ * Every record is stamped with the save generation it was written in. The
+ * generation of the last completed save is kept next to the journal, so
+ * records left over from a save that finished are skipped, not replayed.
+ *
+ * A save writes the new playlist files beside their targets (see staged),
+ * and commit moves them into place only after the next generation is on
+ * disk. A manifest of the staged files is written first, so opening the
+ * journal after a crash either finishes the moves, when the generation had
+ * been written, or drops the staged files and lets the records replay.
+ */
+public class Journal {
+    public static final String CREATE_PLAYLIST = "C";
+    public static final String ADD_MEDIA = "A";
+    public static final String REMOVE_MEDIA = "R";
+    public static final String REMOVE_PLAYLIST = "D";
+    private static final String GENERATION_SUFFIX = ".generation";
+    private static final String MANIFEST_SUFFIX = ".commit";
+    private static final String STAGED_SUFFIX = ".pending";
+
+    private final File file;
+    private final File generationFile;
+    private final File manifestFile;
+    private long generation;
+    private Writer writer;
+
+    public Journal(File file) throws IOException {
+        this.file = file;
+        this.generationFile = new File(file.getPath() + GENERATION_SUFFIX);
+        this.manifestFile = new File(file.getPath() + MANIFEST_SUFFIX);
+        if (generationFile.exists()) {
+            generation = readGeneration(generationFile);
+        }
+        if (manifestFile.exists()) {
+            recover();
+        }
+    }
+
+    // Where a file replaced by commit is written first.
+    public static File staged(File target) {
+        return new File(target.getPath() + STAGED_SUFFIX);
+    }
+
+    // GETTERS
+    public File getFile() {return file;}
+    public synchronized long getGeneration() {return generation;}
+
+    public long size() {
+        return file.length();
+    }
+
+    public void createPlaylist(Playlist playlist) throws IOException {
+        append(CREATE_PLAYLIST, playlist.getName(), playlist.getMediaType(), playlist.getFileName());
+    }
+
+    public void addMedia(Playlist playlist, Media media) throws IOException {
+        append(ADD_MEDIA, playlist.getName(), media.toString());
+    }
+
+    public void removeMedia(Playlist playlist, Media media) throws IOException {
+        append(REMOVE_MEDIA, playlist.getName(), media.getName());
+    }
+
+    public void removePlaylist(Playlist playlist) throws IOException {
+        append(REMOVE_PLAYLIST, playlist.getName());
+    }
+
+    /**
+     * Returns every record of the current generation as its fields, oldest
+     * first. A torn last line from a crash mid-append is dropped.
+     */
+    public ArrayList<String[]> read() throws IOException {
+        ArrayList<String[]> records = new ArrayList<>();
+        if (!file.exists()) {
+            return records;
+        }
+        // the journal is compacted long before it gets large, so read it whole
+        String contents = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        int start = 0;
+        int end;
+        while ((end = contents.indexOf('\n', start)) >= 0) {
+            String[] fields = contents.substring(start, end).split("\t", -1);
+            start = end + 1;
+            if (fields.length < 3 || !isCurrent(fields[0])) {
+                continue;
+            }
+            fields = Arrays.copyOfRange(fields, 1, fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = unescape(fields[i]);
+            }
+            records.add(fields);
+        }
+        return records;
+    }
+
+    private synchronized boolean isCurrent(String stamp) {
+        try {
+            return Long.parseLong(stamp) == generation;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Called once the staged copies of targets hold everything in the
+     * journal. The next generation is the commit point: the manifest is on
+     * disk before it and the staged files are moved into place after it, so
+     * a crash at any step leaves either the old files and records that
+     * replay onto them, or the new files and records that read() skips.
+     * When no edit was ever journaled the files are simply moved.
+     */
+    public synchronized void commit(List<File> targets) throws IOException {
+        close();
+        if (!file.exists()) {
+            moveStaged(targets);
+            return;
+        }
+        StringBuilder manifest = new StringBuilder().append(generation + 1).append('\n');
+        for (File target : targets) {
+            manifest.append(target.getPath()).append('\n');
+        }
+        replace(manifestFile, manifest.toString());
+        replace(generationFile, Long.toString(generation + 1));
+        generation++;
+        moveStaged(targets);
+        Files.delete(manifestFile.toPath());
+        new FileOutputStream(file).close();
+    }
+
+    // Finishes or drops the save a crash interrupted.
+    private void recover() throws IOException {
+        List<String> lines = Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8);
+        ArrayList<File> targets = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            targets.add(new File(line));
+        }
+        if (!lines.isEmpty() && Long.toString(generation).equals(lines.get(0).trim())) {
+            moveStaged(targets);
+        } else {
+            for (File target : targets) {
+                Files.deleteIfExists(staged(target).toPath());
+            }
+        }
+        Files.delete(manifestFile.toPath());
+    }
+
+    private static void moveStaged(List<File> targets) throws IOException {
+        for (File target : targets) {
+            File staged = staged(target);
+            // already moved before the crash
+            if (staged.exists()) {
+                Files.move(staged.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    // Replaces a small file in one step, so a crash never leaves it half written.
+    private static void replace(File target, String contents) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        Files.write(temp.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long readGeneration(File generationFile) throws IOException {
+        String saved = new String(Files.readAllBytes(generationFile.toPath()), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(saved);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid journal generation in " + generationFile);
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private synchronized void append(String... fields) throws IOException {
+        if (writer == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        }
+        StringBuilder record = new StringBuilder().append(generation);
+        for (String field : fields) {
+            record.append('\t');
+            escape(field, record);
+        }
+        record.append('\n');
+        writer.write(record.toString());
+        writer.flush();
+    }
+
+    private static void escape(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder out = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+}
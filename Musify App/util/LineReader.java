@@ -0,0 +1,123 @@
+package util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads lines from a file through a FileChannel. Small files go through a
+ * buffer that is handed back on close and reused by the next reader on the
+ * same thread; files above -Dmusify.mmap.threshold bytes are memory-mapped
+ * instead.
+ *
+ * Lines end at \n, \r or \r\n and a final line needs no terminator, as
+ * with Scanner.nextLine.
+ */
+public class LineReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MMAP_THRESHOLD = Long.getLong(Constants.MMAP_THRESHOLD_PROPERTY, Constants.DEFAULT_MMAP_THRESHOLD);
+    // one spare buffer per thread; a reader opened while another is open allocates its own
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> LINE_BUFFERS = new ThreadLocal<>();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean mapped;
+    private final Charset charset = Charset.defaultCharset();
+    private byte[] lineBytes;
+    private boolean skipLineFeed;
+    private boolean endOfFile;
+    private long bytesRead;
+
+    public LineReader(File file) throws IOException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long size = channel.size();
+        if (size > MMAP_THRESHOLD) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            bytesRead = size;
+            mapped = true;
+        } else {
+            ByteBuffer spare = BUFFERS.get();
+            BUFFERS.set(null);
+            buffer = spare != null ? spare : ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.clear().flip();
+            mapped = false;
+        }
+        lineBytes = LINE_BUFFERS.get();
+        LINE_BUFFERS.set(null);
+        if (lineBytes == null) {
+            lineBytes = new byte[256];
+        }
+    }
+
+    // GETTERS
+    public long getBytesRead() {return bytesRead;}
+
+    // Returns the next line, or null at the end of the file.
+    public String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                return length > 0 ? new String(lineBytes, 0, length, charset) : null;
+            }
+            byte b = buffer.get();
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+            if (b == '\n' || b == '\r') {
+                skipLineFeed = b == '\r';
+                return new String(lineBytes, 0, length, charset);
+            }
+            if (length == lineBytes.length) {
+                lineBytes = Arrays.copyOf(lineBytes, length * 2);
+            }
+            lineBytes[length++] = b;
+        }
+    }
+
+    // Reads the next line into fields, returning false at the end of the file.
+    public boolean readLine(CsvLine fields) throws IOException {
+        String line = readLine();
+        if (line == null) {
+            return false;
+        }
+        fields.reset(line);
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        if (mapped || endOfFile) {
+            return false;
+        }
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        if (read <= 0) {
+            endOfFile = true;
+            return false;
+        }
+        bytesRead += read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (!mapped) {
+            BUFFERS.set(buffer);
+        }
+        LINE_BUFFERS.set(lineBytes);
+    }
+}
@@ -0,0 +1,71 @@
+package util;
+
+import java.util.ArrayList;
+
+/**
+ * Collects the messages produced while loading one playlist so they can be
+ * printed in index-file order, whichever thread did the loading. Rows
+ * skipped in summary mode are held the same way, so the ErrorReport counts
+ * and samples them in index-file order too.
+ */
+public class LoadLog {
+    private final boolean direct;
+    private final ArrayList<String> messages = new ArrayList<>();
+    private final ArrayList<Boolean> errors = new ArrayList<>();
+    private final ArrayList<Runnable> rejections = new ArrayList<>();
+
+    public LoadLog() {
+        this(false);
+    }
+
+    private LoadLog(boolean direct) {
+        this.direct = direct;
+    }
+
+    // A log that prints straight away instead of buffering.
+    public static LoadLog console() {
+        return new LoadLog(true);
+    }
+
+    public void out(String message) {
+        if (direct) {
+            System.out.println(message);
+            return;
+        }
+        messages.add(message);
+        errors.add(false);
+    }
+
+    public void err(String message) {
+        if (direct) {
+            System.err.println(message);
+            return;
+        }
+        messages.add(message);
+        errors.add(true);
+    }
+
+    public void reject(ErrorReport report, String reason, String source, long lineNumber, String line) {
+        if (direct) {
+            report.reject(reason, source, lineNumber, line);
+            return;
+        }
+        rejections.add(() -> report.reject(reason, source, lineNumber, line));
+    }
+
+    public void print() {
+        for (Runnable rejection : rejections) {
+            rejection.run();
+        }
+        rejections.clear();
+        for (int i = 0; i < messages.size(); i++) {
+            if (errors.get(i)) {
+                System.err.println(messages.get(i));
+            } else {
+                System.out.println(messages.get(i));
+            }
+        }
+        messages.clear();
+        errors.clear();
+    }
+}
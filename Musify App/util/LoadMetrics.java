@@ -0,0 +1,171 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the load and save paths. Everything
+ * is a LongAdder or a LatencyHistogram, so the loader threads can record
+ * without contending; callers add per-file totals rather than per line.
+ */
+public class LoadMetrics implements LoadMetricsMXBean {
+    public static final String LOAD_INDEX = "loadIndex";
+    public static final String LOAD_MEDIA_FILE = "loadMediaFile";
+    public static final String LOAD_CAPTION = "loadCaption";
+    public static final String SAVE = "save";
+    public static final String SAVE_PLAYLIST_FILE = "savePlaylistFile";
+
+    private static final LoadMetrics SHARED = new LoadMetrics();
+    private static final TableRenderer HEADER = new TableRenderer(Constants.METRICS_HEADER);
+    private static final TableRenderer ROW = new TableRenderer(Constants.METRICS_FORMATTER);
+
+    private final LongAdder filesOpened = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder linesParsed = new LongAdder();
+    private final LongAdder captionMisses = new LongAdder();
+    private final LongAdder missingCaptionFiles = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> rejections = new ConcurrentHashMap<>();
+    // fixed at construction, so reads need no locking
+    private final LinkedHashMap<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+
+    public LoadMetrics() {
+        for (String operation : new String[] {LOAD_INDEX, LOAD_MEDIA_FILE, LOAD_CAPTION, SAVE, SAVE_PLAYLIST_FILE}) {
+            latencies.put(operation, new LatencyHistogram());
+        }
+    }
+
+    public static LoadMetrics shared() {
+        return SHARED;
+    }
+
+    // Registers the shared metrics with the platform MBean server, unless -Dmusify.jmx=false.
+    public static void register() {
+        if (!Boolean.parseBoolean(System.getProperty(Constants.JMX_PROPERTY, "true"))) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(SHARED, new ObjectName(Constants.METRICS_OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    // GETTERS
+    public long getFilesOpened() {return filesOpened.sum();}
+    public long getBytesRead() {return bytesRead.sum();}
+    public long getLinesParsed() {return linesParsed.sum();}
+    public long getCaptionMisses() {return captionMisses.sum();}
+    public long getMissingCaptionFiles() {return missingCaptionFiles.sum();}
+    public LatencyHistogram getLatency(String operation) {return latencies.get(operation);}
+
+    public long getLinesRejected() {
+        long total = 0;
+        for (LongAdder count : rejections.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    public Map<String, Long> getRejectionsByType() {
+        TreeMap<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> entry : rejections.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getOperationCounts() {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().getCount());
+        }
+        return counts;
+    }
+
+    public Map<String, Long> getMeanMicros() {
+        LinkedHashMap<String, Long> means = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            means.put(entry.getKey(), entry.getValue().getMeanNanos() / 1000);
+        }
+        return means;
+    }
+
+    public Map<String, Long> getP99Micros() {
+        LinkedHashMap<String, Long> percentiles = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            percentiles.put(entry.getKey(), entry.getValue().getPercentileNanos(99) / 1000);
+        }
+        return percentiles;
+    }
+
+    /** Counts one file read through to the end, or as far as it got. */
+    public void fileRead(long bytes, long lines) {
+        filesOpened.increment();
+        bytesRead.add(bytes);
+        linesParsed.add(lines);
+    }
+
+    public void rejected(Exception e) {
+        // counted under the public type, not a private stackless subclass
+        Class<?> type = e.getClass();
+        while (!Modifier.isPublic(type.getModifiers())) {
+            type = type.getSuperclass();
+        }
+        rejections.computeIfAbsent(type.getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    public void captionMiss() {
+        captionMisses.increment();
+    }
+
+    public void missingCaptionFile() {
+        missingCaptionFiles.increment();
+    }
+
+    public void record(String operation, long startNanos) {
+        latencies.get(operation).record(System.nanoTime() - startNanos);
+    }
+
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        String lineSeparator = System.lineSeparator();
+        dump.append("Files opened: ").append(getFilesOpened()).append(lineSeparator);
+        dump.append("Bytes read: ").append(getBytesRead()).append(lineSeparator);
+        dump.append("Lines parsed: ").append(getLinesParsed()).append(lineSeparator);
+        dump.append("Lines rejected: ").append(getLinesRejected());
+        for (Map.Entry<String, Long> entry : getRejectionsByType().entrySet()) {
+            dump.append(", ").append(entry.getKey()).append(' ').append(entry.getValue());
+        }
+        dump.append(lineSeparator);
+        dump.append("Caption cache misses: ").append(getCaptionMisses())
+            .append(", missing caption files: ").append(getMissingCaptionFiles()).append(lineSeparator);
+        HEADER.appendRow(dump, "Operation", "Count", "Total ms", "Mean us", "p50 us", "p99 us", "Max us");
+        dump.append("------------------------------------------------------------------------------").append(lineSeparator);
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            ROW.appendRow(dump, entry.getKey(), histogram.getCount(), histogram.getTotalNanos() / 1000000,
+                    histogram.getMeanNanos() / 1000, histogram.getPercentileNanos(50) / 1000,
+                    histogram.getPercentileNanos(99) / 1000, histogram.getMaxNanos() / 1000);
+        }
+        return dump.toString();
+    }
+
+    public void reset() {
+        filesOpened.reset();
+        bytesRead.reset();
+        linesParsed.reset();
+        captionMisses.reset();
+        missingCaptionFiles.reset();
+        rejections.clear();
+        for (LatencyHistogram histogram : latencies.values()) {
+            histogram.reset();
+        }
+    }
+}
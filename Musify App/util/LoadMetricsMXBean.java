@@ -0,0 +1,21 @@
+package util;
+
+import java.util.Map;
+
+/**
+ * Load and save metrics as seen over JMX, under musify:type=LoadMetrics.
+ */
+public interface LoadMetricsMXBean {
+    long getFilesOpened();
+    long getBytesRead();
+    long getLinesParsed();
+    long getLinesRejected();
+    Map<String, Long> getRejectionsByType();
+    long getCaptionMisses();
+    long getMissingCaptionFiles();
+    Map<String, Long> getOperationCounts();
+    Map<String, Long> getMeanMicros();
+    Map<String, Long> getP99Micros();
+    String dump();
+    void reset();
+}
@@ -0,0 +1,68 @@
+package util;
+
+import entities.*;
+import exceptions.InvalidFormatException;
+import exceptions.InvalidLineException;
+import java.util.ArrayList;
+
+/**
+ * Turns one comma separated playlist file row into a Song, Podcast or
+ * ShortClip. Shared by the loader and the journal replay.
+ */
+public class MediaParser {
+    // Short rows are common in imported catalogs, so skip the stack trace.
+    private static class RowLineException extends InvalidLineException {
+        private static final long serialVersionUID = 1L;
+
+        private RowLineException(String message) {
+            super(message);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private MediaParser() {
+    }
+
+    public static Media parse(String line, String mediaType) throws InvalidLineException, InvalidFormatException {
+        return parse(new CsvLine().reset(line), mediaType, MediaRegistry.unshared());
+    }
+
+    public static Media parse(CsvLine parts, String mediaType) throws InvalidLineException, InvalidFormatException {
+        return parse(parts, mediaType, MediaRegistry.unshared());
+    }
+
+    /**
+     * Returns null for an unknown media type. A bad number surfaces as
+     * NumberFormatException, the way the loader has always reported it.
+     * Identical rows seen by the same registry come back as one instance.
+     */
+    public static Media parse(CsvLine parts, String mediaType, MediaRegistry registry) throws InvalidLineException, InvalidFormatException {
+        switch(mediaType) {
+            case Constants.SONG:
+                if (parts.size() < 6) {
+                    throw new RowLineException("Song details incomplete. Skipping this line.");
+                }
+                int songDuration = parts.intField(4);
+                return registry.song(parts.field(0), parts.field(1), parts.names(2, '#'), parts.field(3), songDuration, parts.field(5));
+            case Constants.PODCAST:
+                if (parts.size() < 8) {
+                    throw new RowLineException("Podcast details incomplete. Skipping this line.");
+                }
+                ArrayList<String> hosts = parts.names(2, '#');
+                int episodeNumber = parts.intField(5);
+                int podcastDuration = parts.intField(6);
+                return registry.podcast(parts.field(0), parts.field(1), hosts, parts.field(3), parts.field(4), episodeNumber, podcastDuration, parts.field(7));
+            case Constants.SHORTCLIP:
+                if (parts.size() < 5) {
+                    throw new RowLineException("ShortClip details incomplete. Skipping this line.");
+                }
+                int shortClipDuration = parts.intField(3);
+                return registry.shortClip(parts.field(0), parts.field(1), parts.field(2), shortClipDuration, parts.field(4));
+        }
+        return null;
+    }
+}
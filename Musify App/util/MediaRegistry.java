@@ -0,0 +1,131 @@
+package util;
+
+import entities.*;
+import exceptions.InvalidFormatException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry so that a media row appearing in many playlists of one catalog is
+ * held once. Identical rows share one Media instance, and the names, genres
+ * and categories they are built from are interned.
+ *
+ * A row is only registered once it is in a playlist (see register), so a
+ * row the playlist refused is never handed out to later ones.
+ *
+ * One registry is made per catalog load and dropped when the load is done,
+ * so it never outlives the media it shares and catalogs share nothing.
+ */
+public class MediaRegistry {
+    private static final MediaRegistry UNSHARED = new MediaRegistry(false);
+
+    private final boolean sharing;
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ArrayList<String>> nameLists = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Media> media = new ConcurrentHashMap<>();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder savedBytes = new LongAdder();
+
+    public MediaRegistry() {
+        this(true);
+    }
+
+    private MediaRegistry(boolean sharing) {
+        this.sharing = sharing;
+    }
+
+    // Builds every media on its own, for rows added outside a load.
+    public static MediaRegistry unshared() {
+        return UNSHARED;
+    }
+
+    // GETTERS
+    public long getRows() {return rows.sum();}
+    public int getUniqueMedia() {return media.size();}
+    public long getSavedBytes() {return savedBytes.sum();}
+
+    public String intern(String value) {
+        if (!sharing) {
+            return value;
+        }
+        String existing = strings.putIfAbsent(value, value);
+        if (existing == null) {
+            return value;
+        }
+        if (existing != value) {
+            savedBytes.add(stringBytes(value));
+        }
+        return existing;
+    }
+
+    // Artists and hosts lists are shared too, so callers must not modify them.
+    public ArrayList<String> internNames(ArrayList<String> names) {
+        if (!sharing) {
+            return names;
+        }
+        ArrayList<String> existing = nameLists.putIfAbsent(String.join("#", names), names);
+        if (existing == null) {
+            for (int i = 0; i < names.size(); i++) {
+                names.set(i, intern(names.get(i)));
+            }
+            return names;
+        }
+        savedBytes.add(40 + 8L * names.size());
+        return existing;
+    }
+
+    /**
+     * Returns the registered instance for a row equal to this one, or this
+     * one if none is registered yet.
+     */
+    public Media dedupe(Media candidate) {
+        if (!sharing) {
+            return candidate;
+        }
+        Media existing = media.get(key(candidate));
+        return existing != null ? existing : candidate;
+    }
+
+    // Called once media was added to a playlist, so later equal rows can share it.
+    public void register(Media added) {
+        if (!sharing) {
+            return;
+        }
+        rows.increment();
+        Media existing = media.putIfAbsent(key(added), added);
+        if (existing == added) {
+            savedBytes.add(estimateBytes(added));
+        }
+    }
+
+    private static String key(Media media) {
+        return media.getClass().getSimpleName() + "\n" + media.toString();
+    }
+
+    public Song song(String name, String description, ArrayList<String> artists, String genre, int duration, String captionFileName) throws InvalidFormatException {
+        return (Song) dedupe(new Song(intern(name), intern(description), internNames(artists), intern(genre), duration, intern(captionFileName)));
+    }
+
+    public Podcast podcast(String name, String description, ArrayList<String> hosts, String category, String seriesName, int episodeNumber, int duration, String captionFileName) throws InvalidFormatException {
+        return (Podcast) dedupe(new Podcast(intern(name), intern(description), internNames(hosts), intern(category), intern(seriesName), episodeNumber, duration, intern(captionFileName)));
+    }
+
+    public ShortClip shortClip(String name, String description, String artistName, int duration, String captionFileName) throws InvalidFormatException {
+        return (ShortClip) dedupe(new ShortClip(intern(name), intern(description), intern(artistName), duration, intern(captionFileName)));
+    }
+
+    public String report() {
+        return "Media registry: " + getRows() + " rows, " + getUniqueMedia() + " unique, about "
+                + (getSavedBytes() / 1024) + " KB saved by sharing.";
+    }
+
+    // Shallow object, caption handle and the strings only this row would have kept alive.
+    private static long estimateBytes(Media media) {
+        return 40 + 16 + stringBytes(media.getName()) + stringBytes(media.getDescription());
+    }
+
+    private static long stringBytes(String value) {
+        return 40 + value.length();
+    }
+}
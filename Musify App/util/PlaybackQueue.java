@@ -0,0 +1,194 @@
+package util;
+
+import entities.*;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Play order over one or more playlists, with shuffle and repeat. Each time
+ * an item is taken, the caption files of the next few items are read into
+ * the CaptionCache on a background thread, so the next item's captions are
+ * usually in memory by the time it plays.
+ *
+ * awaitCaption counts a hit when a prefetch had finished reading the
+ * captions before the item played, and a stall when playback had to wait
+ * for one still reading the file.
+ */
+public class PlaybackQueue implements Closeable {
+    private final ArrayList<PlaylistEntry> items = new ArrayList<>();
+    private final int prefetchDepth;
+    private final ExecutorService prefetcher;
+    private final Random random;
+    private boolean shuffle;
+    private int passes = 1;
+
+    // play order for the current pass, and how far into it we are
+    private ArrayList<PlaylistEntry> order;
+    // the next pass's order, drawn early when prefetching reaches past this pass
+    private ArrayList<PlaylistEntry> upcoming;
+    private int position;
+    private int pass;
+    // caption reads queued but not yet awaited, by caption file name
+    private final HashMap<String, Future<?>> inFlight = new HashMap<>();
+
+    private long hits;
+    private long stalls;
+    private long stallNanos;
+
+    public PlaybackQueue(int prefetchDepth) {
+        this(prefetchDepth, new Random());
+    }
+
+    public PlaybackQueue(int prefetchDepth, Random random) {
+        this.prefetchDepth = prefetchDepth;
+        this.random = random;
+        prefetcher = prefetchDepth > 0 ? Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "caption-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    // GETTERS
+    public int size() {return items.size();}
+    public int getPrefetchDepth() {return prefetchDepth;}
+    public long getHits() {return hits;}
+    public long getStalls() {return stalls;}
+    public long getStallNanos() {return stallNanos;}
+
+    public void setShuffle(boolean shuffle) {
+        this.shuffle = shuffle;
+    }
+
+    // How many times to play the whole queue; at least once.
+    public void setPasses(int passes) {
+        if (passes < 1) {
+            throw new IllegalArgumentException("Passes must be at least 1: " + passes);
+        }
+        this.passes = passes;
+    }
+
+    public void add(Playlist playlist) {
+        for (Media media : playlist.getMediaList()) {
+            items.add(new PlaylistEntry(playlist, media));
+        }
+    }
+
+    /** The next item to play, or null once every pass has finished. */
+    public PlaylistEntry next() {
+        if (order == null || position == order.size()) {
+            if (pass >= passes || items.isEmpty()) {
+                return null;
+            }
+            startPass();
+        }
+        PlaylistEntry entry = order.get(position++);
+        prefetch();
+        return entry;
+    }
+
+    private void startPass() {
+        order = upcoming != null ? upcoming : newOrder();
+        upcoming = null;
+        position = 0;
+        pass++;
+    }
+
+    private ArrayList<PlaylistEntry> newOrder() {
+        ArrayList<PlaylistEntry> drawn = new ArrayList<>(items);
+        if (shuffle) {
+            Collections.shuffle(drawn, random);
+        }
+        return drawn;
+    }
+
+    // The item at index i of this pass, running on into the next pass; null past the last.
+    private PlaylistEntry peek(int i) {
+        if (i < order.size()) {
+            return order.get(i);
+        }
+        if (pass >= passes) {
+            return null;
+        }
+        if (upcoming == null) {
+            upcoming = newOrder();
+        }
+        i -= order.size();
+        return i < upcoming.size() ? upcoming.get(i) : null;
+    }
+
+    // Queues caption reads for the prefetchDepth items after the one about to play.
+    private void prefetch() {
+        if (prefetcher == null) {
+            return;
+        }
+        PlaylistEntry entry;
+        for (int i = position; i < position + prefetchDepth && (entry = peek(i)) != null; i++) {
+            Caption caption = entry.getMedia().getCaption();
+            String fileName = caption.getFileName();
+            if (caption.isLoaded() || inFlight.containsKey(fileName) || isStreamed(caption)) {
+                continue;
+            }
+            inFlight.put(fileName, prefetcher.submit(() -> {
+                try {
+                    CaptionCache.shared().get(fileName);
+                } catch (IOException e) {
+                    // reported when the item plays
+                }
+            }));
+        }
+    }
+
+    /**
+     * Waits for the entry's captions if a prefetch is still reading them,
+     * counting a hit or a stall. Captions no prefetch was reading, and
+     * missing caption files, count as neither.
+     */
+    public void awaitCaption(PlaylistEntry entry) {
+        Caption caption = entry.getMedia().getCaption();
+        Future<?> read = inFlight.remove(caption.getFileName());
+        if (read == null || !caption.exists()) {
+            return;
+        }
+        if (read.isDone()) {
+            hits++;
+            return;
+        }
+        stalls++;
+        long start = System.nanoTime();
+        try {
+            read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the read is retried when the item plays
+        }
+        stallNanos += System.nanoTime() - start;
+    }
+
+    // big captions are streamed at play time rather than cached
+    private static boolean isStreamed(Caption caption) {
+        return caption.getFile().length() > Constants.STREAM_CAPTION_BYTES;
+    }
+
+    @Override
+    public void close() {
+        if (prefetcher != null) {
+            prefetcher.shutdownNow();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Prefetch depth " + prefetchDepth + ": " + hits + " hits, " + stalls + " stalls, "
+                + stallNanos / 1000 + " us waiting";
+    }
+}
@@ -0,0 +1,173 @@
+package util;
+
+import entities.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index from words in media metadata to the playlist entries they
+ * appear in. It listens to the catalog, so it is built during load and kept
+ * current as media are added and removed.
+ *
+ * Words in the title count 3, in artist, host and series names 2 and in the
+ * description 1. Hits matching more query words rank first, then by weight.
+ */
+public class SearchIndex implements PlaylistListener {
+    private static final int TITLE_WEIGHT = 3;
+    private static final int NAME_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final HashMap<String, HashMap<Entry, Integer>> postings = new HashMap<>();
+
+    /** One search result: a media item in the playlist it was found in. */
+    public static class Hit {
+        private final Playlist playlist;
+        private final Media media;
+        private final int matchedWords;
+        private final int score;
+
+        private Hit(Playlist playlist, Media media, int matchedWords, int score) {
+            this.playlist = playlist;
+            this.media = media;
+            this.matchedWords = matchedWords;
+            this.score = score;
+        }
+
+        // GETTERS
+        public Playlist getPlaylist() {return playlist;}
+        public Media getMedia() {return media;}
+        public int getMatchedWords() {return matchedWords;}
+        public int getScore() {return score;}
+    }
+
+    // a media item within one playlist, compared by identity
+    private static class Entry {
+        private final Playlist playlist;
+        private final Media media;
+
+        private Entry(Playlist playlist, Media media) {
+            this.playlist = playlist;
+            this.media = media;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry && ((Entry) other).playlist == playlist && ((Entry) other).media == media;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(playlist) + System.identityHashCode(media);
+        }
+    }
+
+    private static final Comparator<Hit> RANKING = Comparator.comparingInt(Hit::getMatchedWords)
+            .thenComparingInt(Hit::getScore)
+            .thenComparing((Hit hit) -> hit.getPlaylist().getName(), Comparator.reverseOrder())
+            .thenComparing((Hit hit) -> hit.getMedia().getName(), Comparator.reverseOrder());
+
+    @Override
+    public synchronized void mediaAdded(Playlist playlist, Media media) {
+        Entry entry = new Entry(playlist, media);
+        for (Map.Entry<String, Integer> word : weights(media).entrySet()) {
+            postings.computeIfAbsent(word.getKey(), k -> new HashMap<>()).merge(entry, word.getValue(), Integer::sum);
+        }
+    }
+
+    @Override
+    public synchronized void mediaRemoved(Playlist playlist, Media media) {
+        Entry entry = new Entry(playlist, media);
+        for (Map.Entry<String, Integer> word : weights(media).entrySet()) {
+            HashMap<Entry, Integer> entries = postings.get(word.getKey());
+            if (entries == null) {
+                continue;
+            }
+            // the same media may be in a playlist more than once
+            Integer left = entries.merge(entry, -word.getValue(), Integer::sum);
+            if (left != null && left <= 0) {
+                entries.remove(entry);
+            }
+            if (entries.isEmpty()) {
+                postings.remove(word.getKey());
+            }
+        }
+    }
+
+    public synchronized int getWordCount() {
+        return postings.size();
+    }
+
+    /** Returns up to limit hits for the query words, best first. */
+    public synchronized List<Hit> search(String query, int limit) {
+        HashMap<Entry, int[]> scores = new HashMap<>();
+        for (String word : words(query).keySet()) {
+            HashMap<Entry, Integer> entries = postings.get(word);
+            if (entries == null) {
+                continue;
+            }
+            for (Map.Entry<Entry, Integer> posting : entries.entrySet()) {
+                int[] score = scores.computeIfAbsent(posting.getKey(), k -> new int[2]);
+                score[0]++;
+                score[1] += posting.getValue();
+            }
+        }
+        // keep only the best hits, worst of them at the head
+        PriorityQueue<Hit> best = new PriorityQueue<>(RANKING);
+        for (Map.Entry<Entry, int[]> scored : scores.entrySet()) {
+            Entry entry = scored.getKey();
+            best.add(new Hit(entry.playlist, entry.media, scored.getValue()[0], scored.getValue()[1]));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        ArrayList<Hit> hits = new ArrayList<>(best);
+        hits.sort(Collections.reverseOrder(RANKING));
+        return hits;
+    }
+
+    private static HashMap<String, Integer> weights(Media media) {
+        HashMap<String, Integer> weights = new HashMap<>();
+        addWords(weights, media.getName(), TITLE_WEIGHT);
+        addWords(weights, media.getDescription(), DESCRIPTION_WEIGHT);
+        if (media instanceof Song) {
+            for (String artist : ((Song) media).getArtists()) {
+                addWords(weights, artist, NAME_WEIGHT);
+            }
+        } else if (media instanceof Podcast) {
+            Podcast podcast = (Podcast) media;
+            for (String host : podcast.getHosts()) {
+                addWords(weights, host, NAME_WEIGHT);
+            }
+            addWords(weights, podcast.getSeriesName(), NAME_WEIGHT);
+        } else if (media instanceof ShortClip) {
+            addWords(weights, ((ShortClip) media).getArtistName(), NAME_WEIGHT);
+        }
+        return weights;
+    }
+
+    private static HashMap<String, Integer> words(String text) {
+        HashMap<String, Integer> words = new HashMap<>();
+        addWords(words, text, 1);
+        return words;
+    }
+
+    // lower-cased runs of letters and digits
+    private static void addWords(HashMap<String, Integer> words, String text, int weight) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.merge(text.substring(start, i).toLowerCase(Locale.ROOT), weight, Integer::sum);
+                start = -1;
+            }
+        }
+    }
+}
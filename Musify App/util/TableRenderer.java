@@ -0,0 +1,74 @@
+package util;
+
+import java.util.ArrayList;
+
+/**
+ * Precompiled form of one of the table row formats in Constants, such as
+ * "|%2d|%30s|%n". Rows are appended to a caller's StringBuilder, so a whole
+ * page can be written in one call instead of one printf per row.
+ *
+ * Only %Ns, %Nd and %n are supported. Cells are right-aligned and never
+ * cut, as printf does.
+ */
+public class TableRenderer {
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final String[] literals;
+    private final int[] widths;
+
+    public TableRenderer(String format) {
+        ArrayList<String> literalList = new ArrayList<>();
+        ArrayList<Integer> widthList = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < format.length()) {
+            char c = format.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            int width = 0;
+            while (i < format.length() && Character.isDigit(format.charAt(i))) {
+                width = width * 10 + (format.charAt(i++) - '0');
+            }
+            if (i == format.length()) {
+                throw new IllegalArgumentException("Unsupported format: " + format);
+            }
+            char conversion = format.charAt(i++);
+            if (conversion == 'n') {
+                literal.append(LINE_SEPARATOR);
+            } else if (conversion == 's' || conversion == 'd') {
+                literalList.add(literal.toString());
+                literal.setLength(0);
+                widthList.add(width);
+            } else {
+                throw new IllegalArgumentException("Unsupported format: " + format);
+            }
+        }
+        literalList.add(literal.toString());
+        literals = literalList.toArray(new String[0]);
+        widths = new int[widthList.size()];
+        for (int j = 0; j < widths.length; j++) {
+            widths[j] = widthList.get(j);
+        }
+    }
+
+    public int getColumnCount() {
+        return widths.length;
+    }
+
+    public StringBuilder appendRow(StringBuilder out, Object... values) {
+        if (values.length != widths.length) {
+            throw new IllegalArgumentException("Expected " + widths.length + " values but got " + values.length);
+        }
+        for (int i = 0; i < widths.length; i++) {
+            out.append(literals[i]);
+            String value = String.valueOf(values[i]);
+            for (int pad = widths[i] - value.length(); pad > 0; pad--) {
+                out.append(' ');
+            }
+            out.append(value);
+        }
+        return out.append(literals[widths.length]);
+    }
+}